@@ -0,0 +1,225 @@
+package constraintOptimizer;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+
+import scioly.CompleteTeamRoster;
+import scioly.Fingerprint;
+import scioly.MutableRoster;
+import scioly.TeamRosterConfiguration;
+
+/**
+ *
+ * Annealer
+ * Simulated annealing over complete rosters, for rosters too large for branch and bound. Each thread runs an independent chain starting
+ * from the greedy roster. At every step the chain tries a random move: swapping the teams of two members, moving a member to a team with an
+ * open spot, or switching the event a member chose in one scheduling block. A move that does not raise the round 2 score is kept; one that
+ * raises it by d is kept with probability exp(-d / temperature). The temperature falls geometrically over the chain, so early steps wander
+ * across the rosters and late steps only descend.
+ *
+ * Every roster a chain visits within tolerance of the best score found by any chain is collected, once across all chains: a roster is
+ * only copied out of the chain if its Fingerprint has not been seen before. Unlike branch and bound, annealing never
+ * proves that the best roster it found is optimal.
+ *
+ * @author jason
+ *
+ */
+public class Annealer {
+
+	private static final double START_TEMPERATURE = 4;
+	private static final double END_TEMPERATURE = 0.05;
+	/** most rosters kept by each chain, so a wide plateau of equal scores cannot exhaust memory */
+	private static final int MAX_ROSTERS = 10000;
+
+	private final TeamRosterConfiguration teamConfig;
+	private final long steps;
+	private final int tolerance;
+	private final long deadline;
+	private final Incumbent incumbent;
+	/** fingerprints of the rosters collected by any chain, by score; scores beyond tolerance of the best score are dropped */
+	private final ConcurrentSkipListMap<Integer, Set<Fingerprint>> fingerprints = new ConcurrentSkipListMap<Integer, Set<Fingerprint>>();
+
+	private ArrayList<Chain> chains;
+	private double seconds;
+
+	/**
+	 * @param teamConfig
+	 * @param steps number of moves tried by each chain
+	 * @param tolerance rosters with scores up to the best score plus tolerance are returned
+	 * @param deadline System.nanoTime() after which the chains stop early, or 0 for no deadline
+	 */
+	public Annealer(TeamRosterConfiguration teamConfig, long steps, int tolerance, long deadline) {
+		this.teamConfig = teamConfig;
+		this.steps = steps;
+		this.tolerance = tolerance;
+		this.deadline = deadline;
+		incumbent = new Incumbent(Integer.MAX_VALUE - tolerance);
+	}
+
+	/**
+	 * Runs one chain per thread and waits for all of them to finish
+	 * @param threads
+	 * @return rosters within tolerance of the best score found, best first
+	 */
+	public ArrayList<CompleteTeamRoster> run(int threads) {
+		long start = System.nanoTime();
+		CountDownLatch latch = new CountDownLatch(threads);
+		chains = new ArrayList<Chain>();
+		for (int i = 0; i < threads; i++) {
+			Chain chain = new Chain();
+			chains.add(chain);
+			new Thread(() -> {
+				chain.run();
+				latch.countDown();
+			}).start();
+		}
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+		}
+		seconds = (System.nanoTime() - start) / 1e9;
+
+		TreeMap<Integer, ArrayList<CompleteTeamRoster>> merged = new TreeMap<Integer, ArrayList<CompleteTeamRoster>>();
+		for (Chain chain : chains)
+			for (Map.Entry<Integer, ArrayList<CompleteTeamRoster>> e : chain.rosters.headMap(getBest() + tolerance, true).entrySet())
+				merged.computeIfAbsent(e.getKey(), k -> new ArrayList<CompleteTeamRoster>()).addAll(e.getValue());
+		ArrayList<CompleteTeamRoster> rosters = new ArrayList<CompleteTeamRoster>();
+		for (ArrayList<CompleteTeamRoster> bucket : merged.values())
+			rosters.addAll(bucket);
+		return rosters;
+	}
+
+	/**
+	 * @return best round 2 score found by any chain
+	 */
+	public int getBest() {
+		return incumbent.get();
+	}
+
+	public int getTolerance() {
+		return tolerance;
+	}
+
+	/**
+	 * Only valid once run() has returned
+	 * @return total number of moves tried by all chains
+	 */
+	public long getSteps() {
+		long sum = 0;
+		for (Chain chain : chains)
+			sum += chain.steps;
+		return sum;
+	}
+
+	/**
+	 * Only valid once run() has returned
+	 * @return wall-clock time in seconds taken by the chains
+	 */
+	public double getSeconds() {
+		return seconds;
+	}
+
+	private class Chain implements Runnable {
+
+		private final TreeMap<Integer, ArrayList<CompleteTeamRoster>> rosters = new TreeMap<Integer, ArrayList<CompleteTeamRoster>>();
+		private int kept;
+		private long steps;
+
+		@Override
+		public void run() {
+			MutableRoster roster = MutableRoster.greedy(teamConfig);
+			if (roster == null)
+				return;
+			ThreadLocalRandom random = ThreadLocalRandom.current();
+			record(roster);
+
+			double temperature = START_TEMPERATURE;
+			double cooling = Math.pow(END_TEMPERATURE / START_TEMPERATURE, 1.0 / Annealer.this.steps);
+			int n = roster.size();
+			for (; steps < Annealer.this.steps; steps++, temperature *= cooling) {
+				if ((steps & 1023) == 0 && deadline != 0 && System.nanoTime() >= deadline)
+					break;
+
+				int before = roster.getFullScore();
+				int a = random.nextInt(n);
+				int move = random.nextInt(3);
+				int b = 0;
+				int from = roster.getTeam(a);
+				if (move == 0) {
+					// swap the teams of two members, either of whom may be off the teams
+					b = random.nextInt(n);
+					if (from == roster.getTeam(b))
+						continue;
+					roster.swap(a, b);
+					if (!roster.isValid(a) || !roster.isValid(b)) {
+						roster.swap(a, b);
+						continue;
+					}
+				}
+				else if (move == 1) {
+					// move a member to a team with an open spot
+					b = random.nextInt(roster.getTeams());
+					if (from < 0 || b == from || !roster.hasRoom(b))
+						continue;
+					roster.move(a, b);
+					if (!roster.isValid(a)) {
+						roster.move(a, from);
+						continue;
+					}
+				}
+				else {
+					// switch the event a member chose in one of their blocks
+					if (from < 0 || roster.getBlocks(a) == 0)
+						continue;
+					b = random.nextInt(roster.getBlocks(a));
+					if (roster.getOptions(a, b) < 2)
+						continue;
+					from = roster.getChoice(a, b);
+					int c = (from + 1 + random.nextInt(roster.getOptions(a, b) - 1)) % roster.getOptions(a, b);
+					roster.choose(a, b, c);
+				}
+
+				int delta = roster.getFullScore() - before;
+				if (delta <= 0 || random.nextDouble() < Math.exp(-delta / temperature)) {
+					record(roster);
+					continue;
+				}
+				if (move == 0)
+					roster.swap(a, b);
+				else if (move == 1)
+					roster.move(a, from);
+				else
+					roster.choose(a, b, from);
+			}
+		}
+
+		/**
+		 * Keeps a copy of the roster if it is within tolerance of the best score found by any chain and no chain has kept it yet
+		 * @param roster
+		 */
+		private void record(MutableRoster roster) {
+			int score = roster.getFullScore();
+			if (incumbent.offer(score)) {
+				for (ArrayList<CompleteTeamRoster> bucket : rosters.tailMap(incumbent.get() + tolerance, false).values())
+					kept -= bucket.size();
+				rosters.tailMap(incumbent.get() + tolerance, false).clear();
+				fingerprints.tailMap(incumbent.get() + tolerance, false).clear();
+			}
+			if (score > incumbent.get() + tolerance || kept >= MAX_ROSTERS)
+				return;
+			if (fingerprints.computeIfAbsent(score, k -> ConcurrentHashMap.newKeySet()).add(roster.getFingerprint())) {
+				rosters.computeIfAbsent(score, k -> new ArrayList<CompleteTeamRoster>()).add(roster.toCompleteTeamRoster());
+				kept++;
+			}
+		}
+
+	}
+
+}
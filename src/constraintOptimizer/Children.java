@@ -0,0 +1,65 @@
+package constraintOptimizer;
+
+import java.util.ArrayList;
+
+import constraintOptimizer.ConstraintOptimizer.BranchAndBound;
+
+/**
+ *
+ * Children
+ * A cursor over the children of a node in a branch and bound tree. The lower bound of the current child can be read before the child is
+ * built, so a search that prunes a child by its bound never builds it; get() builds the current child only for the children that are
+ * kept. Nodes with many children that are mostly pruned, like those of the FullTeamRoster tree for a member with several conflicting
+ * blocks, save a copy of the node for every pruned child.
+ *
+ * @author jason
+ *
+ */
+public interface Children {
+
+	/**
+	 * Moves to the next child; the cursor starts before the first child
+	 * @return if there is a next child
+	 */
+	public boolean next();
+
+	/**
+	 * @return lower bound of the current child
+	 */
+	public int lowerBound();
+
+	/**
+	 * @return the current child
+	 */
+	public BranchAndBound get();
+
+	/**
+	 * Children of a node that only builds its children all at once with branch(): every child is built, and its bound is read from it
+	 */
+	public static class Built implements Children {
+
+		private final ArrayList<BranchAndBound> children;
+		private int index = -1;
+
+		public Built(ArrayList<BranchAndBound> children) {
+			this.children = children;
+		}
+
+		@Override
+		public boolean next() {
+			return ++index < children.size();
+		}
+
+		@Override
+		public int lowerBound() {
+			return children.get(index).lowerBound();
+		}
+
+		@Override
+		public BranchAndBound get() {
+			return children.get(index);
+		}
+
+	}
+
+}
@@ -1,16 +1,37 @@
 package constraintOptimizer;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Deque;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.BrokenBarrierException;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
+import constraintOptimizer.Frontier.BestFirstFrontier;
+import constraintOptimizer.Frontier.DepthFirstFrontier;
 import scioly.CompleteTeamRoster;
+import scioly.Fingerprint;
 import scioly.FullTeamRoster;
+import scioly.MutableRoster;
+import scioly.RosterVector;
 import scioly.TeamRoster;
 import scioly.TeamRosterConfiguration;
+import scioly.TeamSplit;
 
 /**
  * 
@@ -30,166 +51,1142 @@ public class ConstraintOptimizer {
 	private OptimizerConfiguration optConfig;
 	private TeamRosterConfiguration teamConfig;
 
+	private static final Comparator<Entry> BY_BOUND = new Comparator<Entry>() {
+
+		@Override
+		public int compare(Entry o1, Entry o2) {
+			return Integer.compare(o1.getBound(), o2.getBound());
+		}
+
+	};
+
+	private long[] nodes = new long[2];
+	private double[] seconds = new double[2];
+	/** System.nanoTime() after which the search stops, or 0 for no deadline */
+	private long deadline;
+	private boolean optimal;
+	/** round 2 leaf found by the warm start, whose origin is its round 1 score, or null */
+	private Entry warmStart;
+
 	public ConstraintOptimizer(OptimizerConfiguration optConfig, TeamRosterConfiguration teamConfig) {
 		this.optConfig = optConfig;
 		this.teamConfig = teamConfig;
 	}
 
-	public HashSet<CompleteTeamRoster> optimize() {
-		OptimizerGroup group1 = round1();
-		ArrayList<BranchAndBound> output1 = group1.getOptimal();
+	/**
+	 * Runs both rounds
+	 * @return rosters within round 2 tolerance of the best score: those kept in memory best first, then those the round 2 pool wrote to its
+	 * sink, read back from disk as the result is iterated
+	 */
+	public Iterable<CompleteTeamRoster> optimize() {
+		deadline = 0;
+		if (optConfig.getDeadline() > 0)
+			deadline = System.nanoTime() + optConfig.getDeadline() * 1_000_000_000L;
 
-		System.out.println("\n========\n\nround 1 complete producing " + output1.size() + " rosters with score " + group1.getMinBound()
-		+ " (+" + group1.getTolerance() + ")\n\n========\n");
+		if (optConfig.getStrategy1() == SearchStrategy.ANNEAL)
+			return anneal();
 
-		ConcurrentLinkedDeque<Entry> queue = new ConcurrentLinkedDeque<Entry>();
-		for (BranchAndBound e : output1) {
-			FullTeamRoster ros = FullTeamRoster.initFullTeamRoster(teamConfig, (TeamRoster) e);
-			queue.push(new Entry(ros, ros.lowerBound()));
+		warmStart = null;
+		if (optConfig.isWarmStart())
+			warmStart = warmStart();
+
+		OptimizerGroup group1;
+		OptimizerGroup group2;
+		// a beam search works level by level from a fixed set of roots, so round 2 cannot take round 1 leaves as they come
+		if (optConfig.isPipelined() && optConfig.getStrategy2() != SearchStrategy.BEAM) {
+			group1 = round1Group();
+			group2 = pipeline(group1);
+		}
+		else {
+			group1 = round1();
+			ArrayList<BranchAndBound> output1 = reportRound1(group1);
+
+			ConcurrentLinkedDeque<Entry> queue = new ConcurrentLinkedDeque<Entry>();
+			for (BranchAndBound e : output1) {
+				BranchAndBound ros = round2Root((RosterVector) e);
+				queue.push(new Entry(ros, ros.lowerBound(), e.score()));
+			}
+			group2 = round2(queue, group1);
 		}
-		OptimizerGroup group2 = round2(queue);
 		ArrayList<BranchAndBound> output2 = group2.getOptimal();
+		nodes[1] = group2.getNodes();
+		seconds[1] = group2.getSeconds();
+		optimal = group1.isExhaustive() && group2.isExhaustive();
 
-		HashSet<CompleteTeamRoster> rosters = new HashSet<CompleteTeamRoster>();
-		for (BranchAndBound e : output2) {
-			rosters.add(CompleteTeamRoster.reconstruct(teamConfig, (FullTeamRoster) e));
+		// the rosters held in memory are distinct, and the sink skips those already returned, so the rosters are streamed without
+		// collecting them into a set
+		SolutionSink sink = group2.getOutput().getSink();
+		int maxScore = group2.getMinBound() + group2.getTolerance();
+		int maxOrigin = group2.getMaxOrigin();
+		Set<Fingerprint> heldFingerprints = new HashSet<Fingerprint>();
+		for (BranchAndBound e : output2)
+			if (e.fingerprint() != null)
+				heldFingerprints.add(e.fingerprint());
+		Iterable<CompleteTeamRoster> rosters = () -> {
+			Iterator<BranchAndBound> held = output2.iterator();
+			Iterator<RosterVector> spilled = sink == null ? Collections.emptyIterator()
+					: sink.read(maxScore, maxOrigin, new HashSet<Fingerprint>(heldFingerprints));
+			return new Iterator<CompleteTeamRoster>() {
+				@Override
+				public boolean hasNext() {
+					return held.hasNext() || spilled.hasNext();
+				}
+
+				@Override
+				public CompleteTeamRoster next() {
+					return CompleteTeamRoster.reconstruct(teamConfig, held.hasNext() ? (RosterVector) held.next() : spilled.next());
+				}
+			};
+		};
+		int size = output2.size();
+		if (sink != null) {
+			try (SolutionSink.Reader spilled = sink.read(maxScore, maxOrigin, new HashSet<Fingerprint>(heldFingerprints))) {
+				for (; spilled.hasNext(); spilled.next())
+					size++;
+			}
 		}
 
-		System.out.println("\n========\n\nround 2 complete producing " + rosters.size() + " rosters with score " + group2.getMinBound()
-		+ " (+" + group2.getTolerance() + ")\n\n========\n");
-		FullTeamRoster first = (FullTeamRoster) output2.get(0);
+		System.out.println("\n========\n\nround 2 complete producing " + size + " rosters"
+		+ (size > 0 ? " with score " + group2.getMinBound() + " (+" + group2.getTolerance() + ")" : ""));
+		System.out.println(String.format("explored %d nodes in %.2f s", nodes[1], seconds[1]));
+		reportJobs(group2);
+		if (optimal)
+			System.out.println("search complete: optimality proven");
+		else if (group1.isExpired() || group2.isExpired())
+			System.out.println("deadline reached: returning the best rosters found so far (not proven optimal)");
+		else if (group1.getTable() != null && group1.getTable().getSkipped() > 0)
+			System.out.println("search complete: partial rosters were skipped by the table (not proven optimal)");
+		else
+			System.out.println("beam search complete: returning the best rosters found (not proven optimal)");
+		System.out.println("\n========\n");
+		// the best rosters may all have been found after the pool filled up, in which case they are only in the sink
+		RosterVector first = output2.isEmpty() ? null : (RosterVector) output2.get(0);
+		if ((first == null || first.score() > group2.getMinBound()) && sink != null) {
+			try (SolutionSink.Reader best = sink.read(group2.getMinBound(), maxOrigin, new HashSet<Fingerprint>(heldFingerprints))) {
+				if (best.hasNext())
+					first = best.next();
+			}
+		}
+		boolean fallback = first == null && warmStart != null;
+		if (fallback) {
+			System.out.println("no roster found within tolerance: returning the warm start roster");
+			first = (RosterVector) warmStart.getRoster();
+			rosters = Collections.singletonList(CompleteTeamRoster.reconstruct(teamConfig, first));
+			size = 1;
+		}
+		if (first == null) {
+			System.out.println("no roster found");
+			return rosters;
+		}
 		CompleteTeamRoster.reconstruct(teamConfig, first).print();
 		System.out.println("lower bound: " + first.lowerBound());
 		System.out.println("actual score: " + first.score());
 
+		System.out.println();
+		System.out.println(" + " + (size - 1) + " more rosters...");
+		if (sink != null && size > output2.size() && !fallback)
+			System.out.println(String.format("(%d rosters kept in memory, the rest written to a temporary file)", output2.size()));
+
+		return rosters;
+	}
+
+	/**
+	 * Replaces both rounds with simulated annealing over complete rosters. The moves tried are counted as round 2 nodes.
+	 * @return rosters within round 2 tolerance of the best score found
+	 */
+	private Iterable<CompleteTeamRoster> anneal() {
+		Annealer annealer = new Annealer(teamConfig, optConfig.getAnnealSteps(), optConfig.getTolerance2(), deadline);
+		ArrayList<CompleteTeamRoster> rosters = annealer.run(optConfig.getThreads());
+		nodes[1] = annealer.getSteps();
+		seconds[1] = annealer.getSeconds();
+		optimal = false;
+
+		System.out.println("\n========\n\nannealing complete producing " + rosters.size() + " rosters with score " + annealer.getBest()
+		+ " (+" + annealer.getTolerance() + ")");
+		System.out.println(String.format("tried %d moves in %.2f s", nodes[1], seconds[1]));
+		System.out.println("returning the best rosters found (not proven optimal)");
+		System.out.println("\n========\n");
+		if (rosters.isEmpty()) {
+			System.out.println("no roster satisfies the stacking rules greedily, nothing to anneal");
+			return rosters;
+		}
+		rosters.iterator().next().print();
+		System.out.println("actual score: " + annealer.getBest());
+
 		System.out.println();
 		System.out.println(" + " + (rosters.size() - 1) + " more rosters...");
 
 		return rosters;
 	}
 
+	/**
+	 * Only valid after optimize() has returned
+	 * @return if both rounds searched their whole trees, rather than being stopped by the deadline or cut down by a beam search
+	 */
+	public boolean isOptimal() {
+		return optimal;
+	}
+
+	/**
+	 * Only valid after optimize() has returned
+	 * @param round 1 or 2
+	 * @return number of nodes explored in the given round
+	 */
+	public long getNodes(int round) {
+		return nodes[round - 1];
+	}
+
+	/**
+	 * Only valid after optimize() has returned
+	 * @param round 1 or 2
+	 * @return wall-clock time in seconds taken by the given round
+	 */
+	public double getSeconds(int round) {
+		return seconds[round - 1];
+	}
+
+	/**
+	 * Builds a roster greedily and improves it by local search, so both rounds start with an incumbent instead of pruning nothing until
+	 * the first dive reaches a leaf. Round 2 only takes the roster if its round 1 score is within round 1 tolerance, like any other round 2
+	 * roster. The roster is also what is returned if the deadline stops the search before it finds one.
+	 * @return round 2 leaf of the roster with its round 2 score as the bound and its round 1 score as the origin, or null if the
+	 * greedy placement failed
+	 */
+	private Entry warmStart() {
+		long start = System.nanoTime();
+		MutableRoster greedy = MutableRoster.greedy(teamConfig);
+		TeamRoster leaf1 = null;
+		if (greedy != null) {
+			greedy.improveTeams();
+			greedy.improveChoices();
+			leaf1 = greedy.toTeamRoster();
+		}
+		if (leaf1 == null) {
+			System.out.println("warm start: no roster found greedily, starting without an incumbent");
+			return null;
+		}
+		FullTeamRoster leaf2 = greedy.toFullTeamRoster(leaf1);
+		System.out.println(String.format("warm start: round 1 score %d, round 2 score %d in %.2f s", leaf1.score(), leaf2.score(), (System.nanoTime() - start) / 1e9));
+		return new Entry(leaf2.compact(), leaf2.score(), leaf1.score());
+	}
+
+	private ArrayList<BranchAndBound> reportRound1(OptimizerGroup group1) {
+		ArrayList<BranchAndBound> output1 = group1.getOptimal();
+		nodes[0] = group1.getNodes();
+		seconds[0] = group1.getSeconds();
+
+		System.out.println("\n========\n\nround 1 complete producing " + output1.size() + " rosters"
+		+ (output1.size() > 0 ? " with score " + group1.getMinBound() + " (+" + group1.getTolerance() + ")" : ""));
+		System.out.println(String.format("explored %d nodes in %.2f s", nodes[0], seconds[0]));
+		if (group1.getTable() != null)
+			System.out.println(String.format("skipped %d nodes equivalent to nodes already explored", group1.getTable().getSkipped()));
+		if (group1.isExpired())
+			System.out.println("deadline reached: stopped early");
+		System.out.println("\n========\n");
+		return output1;
+	}
+
+	/**
+	 * Prints how the round 2 jobs went, and which round 1 roster the best rosters came from
+	 * @param group2
+	 */
+	private void reportJobs(OptimizerGroup group2) {
+		ArrayList<Job> jobs = group2.getJobs();
+		if (jobs == null || jobs.isEmpty())
+			return;
+		int cancelled = 0;
+		int reached = 0;
+		Job best = null;
+		for (Job job : jobs) {
+			if (job.isCancelled())
+				cancelled++;
+			if (job.getBest() == group2.getMinBound()) {
+				reached++;
+				if (best == null || Job.ORDER.compare(job, best) < 0)
+					best = job;
+			}
+		}
+		System.out.println(String.format("searched %d round 1 rosters as separate jobs, %d cancelled once their bound was out of tolerance",
+				jobs.size(), cancelled));
+		if (best != null)
+			System.out.println(String.format("best score reached below %d round 1 rosters, first below one with round 1 score %d (%d nodes, %d leaves)",
+					reached, best.getRoot().getOrigin(), best.getNodes(), best.getLeaves()));
+	}
+
 	/**
 	 * Round 1 of optimizations. Traverse the TeamRoster tree and returns an OptimizerGroup containing the results.
 	 * @return OptimizerGroup containing round 1 results
 	 */
 	private OptimizerGroup round1() {
+		OptimizerGroup group = round1Group();
+		start(group);
+		group.await();
+		return group;
+	}
+
+	private OptimizerGroup round1Group() {
 		ConcurrentLinkedDeque<Entry> queue = new ConcurrentLinkedDeque<Entry>();
 		TeamRoster roster = TeamRoster.initTeamRoster(teamConfig);
 		queue.push(new Entry(roster, roster.lowerBound()));
-		OptimizerGroup group = new OptimizerGroup(queue, optConfig.getTolerance1());
-		ArrayList<OptimizerThread> threadList = new ArrayList<OptimizerThread>();
-		for (int i = 0; i < optConfig.getThreads(); i++) {
-			threadList.add(new OptimizerThreadA(group, i));
-		}
-		group.run(threadList);
-
-		try {
-			group.getLatch().await();
-		} catch (InterruptedException e) {
-			e.printStackTrace();
-		}
+		OptimizerGroup group = newGroup(queue, optConfig.getTolerance1(), optConfig.getStrategy1());
+		if (optConfig.getTableSize() > 0)
+			group.setTable(new TranspositionTable(optConfig.getTableSize()));
+		// the warm start roster is not added to the round 1 pool, since the search would find it again
+		if (warmStart != null)
+			group.setFallback(warmStart.getOrigin());
 		return group;
 	}
 
 	/**
 	 * Round 2 of optimizations. Takes an input from round 1 and returns an OptimizerGroup containing the results
 	 * @param queue queue of inputs
+	 * @param group1 finished round 1 group
 	 * @return OptimizerGroup containing round 2 results
 	 */
-	private OptimizerGroup round2(Deque<Entry> queue) {
-		OptimizerGroup group = new OptimizerGroup(queue, optConfig.getTolerance2());
+	private OptimizerGroup round2(Deque<Entry> queue, OptimizerGroup group1) {
+		OptimizerGroup group = round2Group(queue, group1, false);
+		start(group);
+		group.await();
+		return group;
+	}
+
+	/**
+	 * Runs both rounds at once: every round 1 leaf that is within tolerance when it is found is handed straight to round 2, instead of
+	 * waiting for round 1 to finish. Round 2 drops any queued node whose round 1 leaf has since fallen out of tolerance, and only prunes a
+	 * node against the rosters found below round 1 scores no higher than its own, which count whenever the node's do. Once both rounds are
+	 * done, the rosters found below round 1 leaves that fell out of tolerance are dropped, so the result is the same as running the rounds
+	 * one after the other.
+	 * @param group1 round 1 group, not yet started
+	 * @return OptimizerGroup containing round 2 results
+	 */
+	private OptimizerGroup pipeline(OptimizerGroup group1) {
+		OptimizerGroup group2 = round2Group(new ConcurrentLinkedDeque<Entry>(), group1, true);
+		start(group2);
+
+		group1.setLeafListener(leaf -> {
+			BranchAndBound ros = round2Root((RosterVector) leaf.getRoster());
+			group2.submit(new Entry(ros, ros.lowerBound(), leaf.getBound()));
+		});
+		start(group1);
+		group1.await();
+		reportRound1(group1);
+
+		group2.close();
+		group2.await();
+		group2.settle();
+		return group2;
+	}
+
+	/**
+	 * @param leaf round 1 leaf
+	 * @return root of the round 2 tree below the leaf, split by team unless decomposition is off or the search is a beam search, which
+	 * needs whole rosters at every level; bounded exactly by min-cost flows for the flow strategy
+	 */
+	private BranchAndBound round2Root(RosterVector leaf) {
+		boolean exact = optConfig.getStrategy2() == SearchStrategy.FLOW;
+		if (optConfig.isDecomposed() && optConfig.getStrategy2() != SearchStrategy.BEAM)
+			return new TeamSplit(teamConfig, leaf, exact);
+		return FullTeamRoster.initFullTeamRoster(teamConfig, leaf, exact);
+	}
+
+	/**
+	 * @param queue round 2 roots
+	 * @param group1 round 1 group
+	 * @param pipelined whether round 1 feeds the round 2 group as they both run, rather than having finished
+	 * @return round 2 group, not yet started
+	 */
+	private OptimizerGroup round2Group(Deque<Entry> queue, OptimizerGroup group1, boolean pipelined) {
+		OptimizerGroup group = newGroup(queue, optConfig.getTolerance2(), optConfig.getStrategy2());
+		if (optConfig.getSpill() > 0)
+			group.getOutput().setSink(new SolutionSink(teamConfig, optConfig.getSpill()));
+		if (pipelined)
+			group.setUpstream(group1);
+		if (warmStart != null) {
+			group.setFallback();
+			// a pipelined group drops the seed once round 1 is done if its round 1 score turns out to be out of tolerance
+			if (pipelined || warmStart.getOrigin() <= group1.getMinBound() + group1.getTolerance())
+				group.setSeed(warmStart);
+		}
+		// a beam search works level by level across every root at once
+		if (group.getStrategy() != SearchStrategy.BEAM)
+			group.setJobs();
+		return group;
+	}
+
+	private OptimizerGroup newGroup(Deque<Entry> seeds, int tolerance, SearchStrategy strategy) {
+		OptimizerGroup group = new OptimizerGroup(seeds, tolerance, strategy);
+		group.setDeadline(deadline);
+		group.setTieBreak(optConfig.getTieBreak());
+		return group;
+	}
+
+	private void start(OptimizerGroup group) {
 		ArrayList<OptimizerThread> threadList = new ArrayList<OptimizerThread>();
-		for (int i = 0; i < optConfig.getThreads(); i++) {
-			threadList.add(new OptimizerThreadA(group, i));
+		if (group.getStrategy() == SearchStrategy.BEAM) {
+			Beam beam = new Beam(group, optConfig.getBeamWidth(), optConfig.getThreads());
+			for (int i = 0; i < optConfig.getThreads(); i++)
+				threadList.add(new OptimizerThreadB(group, i, beam));
 		}
-		group.run(threadList);
-		try {
-			group.getLatch().await();
-		} catch (InterruptedException e) {
-			e.printStackTrace();
+		else {
+			boolean trail = optConfig.isTrail() && group.getStrategy() == SearchStrategy.DEPTH_FIRST;
+			for (int i = 0; i < optConfig.getThreads(); i++)
+				threadList.add(trail ? new OptimizerThreadC(group, i) : new OptimizerThreadA(group, i));
 		}
-		return group;
+		group.run(threadList);
 	}
 
 	/**
 	 * 
 	 * OptimizerGroup
-	 * Synchronizes a group of optimizer threads
+	 * Synchronizes a group of optimizer threads. Each thread owns a frontier of entries; a thread pushes and polls its own frontier (the head of
+	 * a deque for depth-first search), and when its frontier runs dry it steals from another thread's frontier (the tail of the deque, where the
+	 * shallowest and largest subtrees are).
+	 * 
+	 * A thread that finds no work anywhere goes idle and parks until another thread pushes new work. The group keeps a count of threads that are
+	 * not idle; the round is over once the last active thread goes idle and every frontier is empty, since only active threads can create work.
+	 * A group fed by an upstream group stays open until the upstream group closes it, since new work can still be submitted from outside.
+	 * 
+	 * A group can instead search each of its seeds as a separate Job (as round 2 does with each round 1 roster). Frontiers then belong to
+	 * jobs rather than threads: a thread works through its current job's frontier, then starts the next job in Job.ORDER, and only once no
+	 * job is left to start does it steal from the job of another thread. Whenever the incumbent improves, jobs whose root bound is out of
+	 * tolerance are cancelled.
+	 * 
+	 * A best-first group instead takes each entry from whichever frontier (or job of a thread) has the lowest bound at its head, so no thread
+	 * expands a node while a more promising one waits in another thread's frontier.
+	 * 
+	 * Once the deadline passes and the solution pool holds at least one roster (or a warm start roster can be returned instead), the group
+	 * expires: every thread stops and the round ends with whatever is in the pool.
 	 * 
 	 * @author jason
 	 *
 	 */
 	private static class OptimizerGroup {
 
-		private Deque<Entry> queue;
-		private LinkedBlockingDeque<Entry> output;
-		private int tolerance;
-		private CountDownLatch latch;
-		private boolean[] stopped;
-		private int minBound;
+		private Deque<Entry> seeds;
+		private SearchStrategy strategy;
+		private ArrayList<Frontier> queues;
+		/** every job of the group, in the order they were created, or null if the group does not search its seeds as jobs */
+		private ArrayList<Job> jobs;
+		/** jobs not yet started; guarded by itself, as are additions to jobs */
+		private PriorityQueue<Job> pending;
+		/** job each thread is working on, or null */
+		private AtomicReferenceArray<Job> current;
+		/** node count of each thread when it took up its current job */
+		private long[] marks;
+		/** jobs a thread left while they still had open nodes, so those nodes are found even if no thread is working on the job */
+		private Set<Job> parked;
+		private Incumbent incumbent;
+		private SolutionPool output;
+		/** in a group fed by an upstream group, a pool for the leaves below each upstream score until both groups are done; see settle() */
+		private ConcurrentSkipListMap<Integer, SolutionPool> origins;
+		/** highest origin that stays within the upstream tolerance, known once the upstream group is done */
+		private volatile int settledOrigin = Integer.MIN_VALUE;
+		private int tolerance;
+		private CountDownLatch latch;
+
+		private final ReentrantLock idleLock = new ReentrantLock();
+		private final Condition workAvailable = idleLock.newCondition();
+		/** threads holding or looking for work; guarded by idleLock */
+		private int active;
+		/** threads parked waiting for work; only written under idleLock, read without it by pushing threads */
+		private volatile int idle;
+		private boolean finished;
+		/** whether work may still be submitted from outside the group; guarded by idleLock */
+		private boolean open;
+
+		private long deadline;
+		/** whether a roster found outside the group can be returned if the group stops with an empty pool */
+		private boolean fallback;
+		private volatile boolean expired;
+		/** set when nodes that could still beat the incumbent were dropped, as by a beam search */
+		private volatile boolean truncated;
+
+		private TieBreak tieBreak = TieBreak.STABLE;
+		private TranspositionTable table;
+		private OptimizerGroup upstream;
+		private Consumer<Entry> leafListener;
+		private final AtomicInteger nextSubmit = new AtomicInteger();
+		private ArrayList<OptimizerThread> threads;
+		private long startTime;
+		private long endTime;
+
+		public OptimizerGroup(Deque<Entry> seeds, int tolerance, SearchStrategy strategy) {
+			this.seeds = seeds;
+			this.strategy = strategy;
+			this.tolerance = tolerance;
+			incumbent = new Incumbent(Integer.MAX_VALUE - tolerance);
+			output = new SolutionPool(incumbent, tolerance);
+		}
+
+		public void run(ArrayList<OptimizerThread> threads) {
+			this.threads = threads;
+			active = threads.size();
+			latch = new CountDownLatch(threads.size());
+
+			queues = new ArrayList<Frontier>();
+			for (int i = 0; i < threads.size(); i++)
+				queues.add(newFrontier());
+			if (jobs != null) {
+				current = new AtomicReferenceArray<Job>(threads.size());
+				marks = new long[threads.size()];
+				for (Entry e : seeds)
+					addJob(e);
+			}
+			else {
+				// deal the initial entries out round-robin so every thread starts with local work
+				int i = 0;
+				for (Entry e : seeds) {
+					queues.get(i % queues.size()).add(e);
+					i++;
+				}
+			}
+
+			startTime = System.nanoTime();
+			for (OptimizerThread ot : threads)
+				new Thread(ot).start();
+		}
+
+		/**
+		 * Takes the next entry for a thread, parking the thread while there is no work anywhere in the group.
+		 * @param index index of the polling thread
+		 * @return next entry, or null once the round is over
+		 */
+		public Entry take(int index) {
+			Entry e = poll(index);
+			if (e != null)
+				return e;
+
+			idleLock.lock();
+			try {
+				active--;
+				idle++;
+				try {
+					while (!finished) {
+						// checked under the lock: a push that happens after this poll will see idle > 0 and signal
+						e = poll(index);
+						if (e != null) {
+							active++;
+							return e;
+						}
+						if (active == 0 && !open) {
+							finished = true;
+							workAvailable.signalAll();
+							break;
+						}
+						workAvailable.awaitUninterruptibly();
+					}
+					return null;
+				} finally {
+					idle--;
+				}
+			} finally {
+				idleLock.unlock();
+			}
+		}
+
+		/**
+		 * Takes the next entry for a thread: from its own frontier, or failing that, stolen from another thread's frontier
+		 * @param index index of the polling thread
+		 * @return next entry, or null if no work could be found
+		 */
+		public Entry poll(int index) {
+			if (jobs != null)
+				return pollJobs(index);
+			if (isBestFirst())
+				return pollBest(index);
+			Entry e = queues.get(index).poll();
+			if (e != null)
+				return e;
+			return steal(index);
+		}
+
+		/**
+		 * Takes the next entry for a thread from its current job, or failing that, from the next job to start, or failing that, stolen from
+		 * the job of another thread
+		 * @param index index of the polling thread
+		 * @return next entry, or null if no work could be found
+		 */
+		private Entry pollJobs(int index) {
+			Job job = current.get(index);
+			if (isBestFirst()) {
+				Entry e = pollBest(index);
+				if (e != null)
+					return e;
+			}
+			else if (job != null) {
+				Entry e = job.getFrontier().poll();
+				if (e != null)
+					return e;
+			}
+			while ((job = nextJob()) != null) {
+				setJob(index, job);
+				Entry e = job.getFrontier().poll();
+				if (e != null)
+					return e;
+			}
+			return steal(index);
+		}
+
+		/**
+		 * Takes the entry with the lowest bound at the head of any thread's frontier, or of any thread's current job, moving the polling
+		 * thread to that job
+		 * @param index index of the polling thread
+		 * @return next entry, or null if every frontier is empty
+		 */
+		private Entry pollBest(int index) {
+			int n = queues.size();
+			while (true) {
+				Frontier best = null;
+				Job bestJob = null;
+				int bound = Integer.MAX_VALUE;
+				// starting at the thread's own frontier keeps ties local
+				for (int i = 0; i < n; i++) {
+					int t = (index + i) % n;
+					Job job = jobs == null ? null : current.get(t);
+					Frontier frontier = jobs == null ? queues.get(t) : job == null ? null : job.getFrontier();
+					if (frontier == null)
+						continue;
+					int b = frontier.peekBound();
+					if (b < bound) {
+						bound = b;
+						best = frontier;
+						bestJob = job;
+					}
+				}
+				if (jobs != null) {
+					for (Job job : parked) {
+						int b = job.getFrontier().peekBound();
+						if (b == Integer.MAX_VALUE)
+							parked.remove(job);
+						else if (b < bound) {
+							bound = b;
+							best = job.getFrontier();
+							bestJob = job;
+						}
+					}
+				}
+				if (best == null)
+					return null;
+				Entry e = best.poll();
+				if (e != null) {
+					if (bestJob != null)
+						setJob(index, bestJob);
+					return e;
+				}
+				// another thread took the head first; look again
+			}
+		}
+
+		private boolean isBestFirst() {
+			return strategy == SearchStrategy.BEST_FIRST || strategy == SearchStrategy.HYBRID;
+		}
+
+		private Frontier newFrontier() {
+			if (isBestFirst())
+				return new BestFirstFrontier();
+			return new DepthFirstFrontier();
+		}
+
+		/**
+		 * Searches each seed, and each entry submitted later, as a separate job; must be called before run()
+		 */
+		public void setJobs() {
+			jobs = new ArrayList<Job>();
+			pending = new PriorityQueue<Job>(Job.ORDER);
+			parked = ConcurrentHashMap.newKeySet();
+		}
+
+		/**
+		 * @return every job of the group, or null if the group does not search its seeds as jobs
+		 */
+		public ArrayList<Job> getJobs() {
+			return jobs;
+		}
+
+		private void addJob(Entry root) {
+			synchronized (pending) {
+				Job job = new Job(jobs.size(), root, newFrontier());
+				jobs.add(job);
+				pending.add(job);
+			}
+		}
+
+		/**
+		 * @return the next job to start, skipping and cancelling jobs that are out of tolerance, or null if there is none
+		 */
+		private Job nextJob() {
+			synchronized (pending) {
+				Job job;
+				while ((job = pending.poll()) != null) {
+					if (job.isCancelled())
+						continue;
+					if (isOutOfBounds(job)) {
+						job.cancel();
+						continue;
+					}
+					job.start();
+					return job;
+				}
+				return null;
+			}
+		}
+
+		/**
+		 * Cancels every job with work left whose root is out of tolerance; called whenever the incumbent improves
+		 */
+		private void cancelJobs() {
+			if (jobs == null)
+				return;
+			synchronized (pending) {
+				for (Job job : jobs)
+					if (!job.isCancelled() && (!job.isStarted() || !job.getFrontier().isEmpty()) && isOutOfBounds(job))
+						job.cancel();
+			}
+		}
+
+		private boolean isOutOfBounds(Job job) {
+			return job.getRoot().getBound() > getMinBound(job.getRoot().getOrigin()) + tolerance || isStale(job.getRoot());
+		}
+
+		/**
+		 * Moves a thread to another job, counting the nodes it explored for its previous job, and parking the previous job if it still has
+		 * open nodes. Only threads working on a job push onto its frontier, so a job left empty stays empty unless a thread takes it up again.
+		 * @param index
+		 * @param job
+		 */
+		private void setJob(int index, Job job) {
+			Job previous = current.get(index);
+			if (previous == job)
+				return;
+			long nodes = threads.get(index).nodes;
+			if (previous != null) {
+				previous.addNodes(nodes - marks[index]);
+				if (!previous.getFrontier().isEmpty())
+					parked.add(previous);
+			}
+			marks[index] = nodes;
+			current.set(index, job);
+		}
+
+		/**
+		 * Called by each thread as it stops
+		 * @param index
+		 */
+		private void stop(int index) {
+			if (jobs != null)
+				setJob(index, null);
+			latch.countDown();
+		}
+
+		/**
+		 * @param index
+		 * @return frontier the thread pushes onto: its own, or its current job's
+		 */
+		private Frontier frontier(int index) {
+			if (jobs != null)
+				return current.get(index).getFrontier();
+			return queues.get(index);
+		}
+
+		public void setTieBreak(TieBreak tieBreak) {
+			this.tieBreak = tieBreak;
+		}
+
+		/**
+		 * @param table transposition table shared by the group's threads, or null to expand every node
+		 */
+		public void setTable(TranspositionTable table) {
+			this.table = table;
+		}
+
+		public TranspositionTable getTable() {
+			return table;
+		}
+
+		/**
+		 * @param entry entry about to be expanded
+		 * @return if the entry should be expanded, i.e. no equivalent node was already expanded with an equal or lower bound
+		 */
+		private boolean visit(Entry entry) {
+			if (table == null)
+				return true;
+			long key = entry.getRoster().key();
+			return key == 0 || table.visit(key, entry.getBound());
+		}
+
+		/**
+		 * @param deadline System.nanoTime() after which the group stops, or 0 for no deadline
+		 */
+		public void setDeadline(long deadline) {
+			this.deadline = deadline;
+		}
+
+		/**
+		 * Starts the incumbent at the score of a roster found outside the group, which can be returned if the group finds nothing better
+		 * before the deadline
+		 * @param score
+		 */
+		public void setFallback(int score) {
+			incumbent.offer(score);
+			fallback = true;
+		}
+
+		/**
+		 * Lets the group stop at the deadline with an empty pool, since a roster found outside the group can be returned instead; unlike
+		 * setFallback(int), the roster's score does not prune the search
+		 */
+		public void setFallback() {
+			fallback = true;
+		}
+
+		/**
+		 * Adds a leaf found outside the group to the solution pool; the pool skips the same leaf if the search finds it again
+		 * @param seed
+		 */
+		public void setSeed(Entry seed) {
+			pool(seed.getOrigin()).add(seed);
+		}
+
+		/**
+		 * Expires the group if the deadline has passed and there is at least one solution to return
+		 * @return if the group has expired
+		 */
+		private boolean checkDeadline() {
+			if (expired)
+				return true;
+			if (deadline == 0 || System.nanoTime() < deadline || (!hasSolutions() && !fallback))
+				return false;
+			idleLock.lock();
+			try {
+				expired = true;
+				finished = true;
+				workAvailable.signalAll();
+			} finally {
+				idleLock.unlock();
+			}
+			return true;
+		}
+
+		public boolean isExpired() {
+			return expired;
+		}
+
+		/**
+		 * @return if every node that could still beat the incumbent was explored; a node skipped by the transposition table may have been
+		 *         a key collision, so a run that skipped any node is not exhaustive
+		 */
+		public boolean isExhaustive() {
+			return !expired && !truncated && (table == null || table.getSkipped() == 0);
+		}
+
+		private Entry steal(int index) {
+			int n = queues.size();
+			int start = ThreadLocalRandom.current().nextInt(n);
+			for (int i = 0; i < n; i++) {
+				int victim = (start + i) % n;
+				if (victim == index)
+					continue;
+				Entry e;
+				if (jobs == null)
+					e = queues.get(victim).steal();
+				else {
+					Job job = current.get(victim);
+					e = job == null ? null : job.getFrontier().steal();
+					if (e != null)
+						setJob(index, job);
+				}
+				if (e != null)
+					return e;
+			}
+			if (jobs != null) {
+				for (Job job : parked) {
+					Entry e = job.getFrontier().steal();
+					if (e != null) {
+						setJob(index, job);
+						return e;
+					}
+					parked.remove(job);
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * @param index
+		 * @return if the thread's frontier is empty
+		 */
+		public boolean isEmpty(int index) {
+			return frontier(index).isEmpty();
+		}
+
+		public void push(int index, Entry entry) {
+			frontier(index).push(entry);
+			if (idle > 0)
+				signal();
+		}
+
+		/**
+		 * Adds an entry from outside the group, as a new job or dealt out round-robin
+		 * @param entry
+		 */
+		public void submit(Entry entry) {
+			if (jobs != null)
+				addJob(entry);
+			else
+				queues.get(Math.floorMod(nextSubmit.getAndIncrement(), queues.size())).add(entry);
+			if (idle > 0)
+				signal();
+		}
+
+		private void signal() {
+			idleLock.lock();
+			try {
+				workAvailable.signal();
+			} finally {
+				idleLock.unlock();
+			}
+		}
+
+		/**
+		 * Keeps the group open to submitted work until close() is called; entries whose origin score falls out of the upstream group's
+		 * tolerance are dropped instead of expanded
+		 * @param upstream
+		 */
+		public void setUpstream(OptimizerGroup upstream) {
+			this.upstream = upstream;
+			origins = new ConcurrentSkipListMap<Integer, SolutionPool>();
+			idleLock.lock();
+			try {
+				open = true;
+			} finally {
+				idleLock.unlock();
+			}
+		}
+
+		/**
+		 * Signals that no more work will be submitted, i.e. that the upstream group is done
+		 */
+		public void close() {
+			settledOrigin = getMaxOrigin();
+			idleLock.lock();
+			try {
+				open = false;
+				workAvailable.signalAll();
+			} finally {
+				idleLock.unlock();
+			}
+		}
+
+		/**
+		 * @param leafListener called with every leaf accepted into the solution pool, as it is found
+		 */
+		public void setLeafListener(Consumer<Entry> leafListener) {
+			this.leafListener = leafListener;
+		}
+
+		/**
+		 * Sorts children by lower bound, most promising first, breaking ties between equal bounds by the group's tie break
+		 * @param children
+		 */
+		private void sortChildren(ArrayList<Entry> children) {
+			if (tieBreak == TieBreak.REVERSE)
+				Collections.reverse(children);
+			else if (tieBreak == TieBreak.RANDOM)
+				Collections.shuffle(children, ThreadLocalRandom.current());
+			children.sort(BY_BOUND);
+		}
+
+		/**
+		 * Sorts children of a trail by lower bound, like sortChildren(ArrayList)
+		 * @param children child indices; sorted in place together with bounds
+		 * @param bounds lower bound of each child
+		 * @param count number of children
+		 */
+		private void sortChildren(int[] children, int[] bounds, int count) {
+			if (tieBreak == TieBreak.REVERSE) {
+				for (int i = 0, j = count - 1; i < j; i++, j--)
+					swap(children, bounds, i, j);
+			}
+			else if (tieBreak == TieBreak.RANDOM) {
+				ThreadLocalRandom random = ThreadLocalRandom.current();
+				for (int i = count - 1; i > 0; i--)
+					swap(children, bounds, i, random.nextInt(i + 1));
+			}
+			// insertion sort is stable, and there are only a few children
+			for (int i = 1; i < count; i++)
+				for (int j = i; j > 0 && bounds[j - 1] > bounds[j]; j--)
+					swap(children, bounds, j, j - 1);
+		}
+
+		private static void swap(int[] children, int[] bounds, int i, int j) {
+			int c = children[i];
+			children[i] = children[j];
+			children[j] = c;
+			int b = bounds[i];
+			bounds[i] = bounds[j];
+			bounds[j] = b;
+		}
+
+		/**
+		 * Scores a leaf and offers it to the solution pool
+		 * @param roster complete roster
+		 * @param origin origin of the leaf's entry
+		 * @param index index of the thread that found the leaf
+		 */
+		private void addLeaf(BranchAndBound roster, int origin, int index) {
+			int score = roster.score();
+			int previousMin = getMinBound(origin);
+			if (score > previousMin + tolerance)
+				return;
+
+			if (roster.subproblem() != null) {
+				roster.subproblem().addLeaf(roster);
+				return;
+			}
+			Entry leaf = new Entry(roster.compact(), score, origin);
+			int size = pool(origin).add(leaf);
+			if (size > 0 && jobs != null)
+				current.get(index).addLeaf(score);
+			if (score < previousMin)
+				cancelJobs();
+			if (size > 0 && leafListener != null)
+				leafListener.accept(leaf);
+			if (score < previousMin && score == getMinBound(origin))
+				System.out.println("\nnew minimum score found: " + score);
+			else if (size > 0 && size % Math.pow(10, Math.floor(Math.log10(size))) == 0)
+				System.out.println(size + " rosters with score " + score);
+		}
+
+		/**
+		 * Called before an entry is added to the search
+		 * @param entry
+		 */
+		private void open(Entry entry) {
+			Subproblem subproblem = entry.getRoster().subproblem();
+			if (subproblem != null)
+				subproblem.open();
+		}
+
+		/**
+		 * Called once a thread is done with an entry; the solutions of a decomposed problem are offered to the pool by the thread that
+		 * closes its last entry
+		 * @param entry
+		 * @param index index of the thread
+		 */
+		private void close(Entry entry, int index) {
+			Subproblem subproblem = entry.getRoster().subproblem();
+			if (subproblem != null)
+				subproblem.close(() -> getMinBound(entry.getOrigin()) + tolerance, solution -> addLeaf(solution, entry.getOrigin(), index));
+		}
 
-		public OptimizerGroup(Deque<Entry> queue, int tolerance) {
-			this.queue = queue;
-			this.tolerance = tolerance;
-			output = new LinkedBlockingDeque<Entry>();
+		private boolean isStale(Entry entry) {
+			return entry.getOrigin() > getMaxOrigin();
 		}
 
-		public void run(ArrayList<OptimizerThread> threads) {
-			minBound = Integer.MAX_VALUE - tolerance;
-			stopped = new boolean[threads.size()];
-			latch = new CountDownLatch(threads.size());
-			for (OptimizerThread ot : threads) {
-				new Thread(ot).start();
-				try {
-					Thread.sleep(100);
-				} catch (InterruptedException e) {
-					e.printStackTrace();
-				}
-			}
+		/**
+		 * @return highest origin within the upstream group's tolerance so far, or Integer.MAX_VALUE if the group has no upstream group
+		 */
+		private int getMaxOrigin() {
+			return upstream == null ? Integer.MAX_VALUE : upstream.getMinBound() + upstream.getTolerance();
+		}
+
+		/**
+		 * @param origin
+		 * @return pool for leaves with the given origin
+		 */
+		private SolutionPool pool(int origin) {
+			if (origins == null)
+				return output;
+			return origins.computeIfAbsent(origin, k -> {
+				SolutionPool pool = new SolutionPool(new Incumbent(Integer.MAX_VALUE - tolerance), tolerance);
+				pool.setSink(output.getSink());
+				return pool;
+			});
+		}
+
+		private boolean hasSolutions() {
+			if (!output.isEmpty())
+				return true;
+			if (origins != null)
+				for (SolutionPool pool : origins.values())
+					if (!pool.isEmpty())
+						return true;
+			return false;
 		}
 
-		public Deque<Entry> getQueue(){
-			return queue;
+		/**
+		 * Merges the pools of the origins that stayed within the upstream tolerance into the output, dropping the leaves of every other
+		 * origin; called once both this group and its upstream group are done
+		 */
+		public void settle() {
+			for (SolutionPool pool : origins.headMap(getMaxOrigin(), true).values())
+				output.addAll(pool);
+			origins = null;
 		}
 
-		public LinkedBlockingDeque<Entry> getOutput(){
+		public SolutionPool getOutput(){
 			return output;
 		}
 
 		public ArrayList<BranchAndBound> getOptimal(){
 			ArrayList<BranchAndBound> optimal = new ArrayList<BranchAndBound>();
-			for (Entry e : getOutput()) {
-				if (e.getBound() <= getMinBound() + tolerance)
-					optimal.add(e.getRoster());
-			}
+			for (Entry e : getOutput().getSolutions())
+				optimal.add(e.getRoster());
 			return optimal;
 		}
 
-		private synchronized boolean done() {
-			for (boolean b : stopped)
-				if (!b)
-					return false;
-			return true;
+		private int getMinBound() {
+			return incumbent.get();
 		}
 
-		private void setStopped(int index, boolean stopped) {
-			this.stopped[index] = stopped;
+		/**
+		 * A leaf found below a round 1 roster only counts if that roster stays within the upstream tolerance, which is only known once the
+		 * upstream group is done. A node is therefore pruned against the leaves found below round 1 scores no higher than its own: if its
+		 * own round 1 roster stays within tolerance, so do theirs.
+		 * @param origin origin of a node
+		 * @return incumbent to prune the node against
+		 */
+		private int getMinBound(int origin) {
+			int min = incumbent.get();
+			if (origins != null)
+				for (SolutionPool pool : origins.headMap(Math.max(origin, settledOrigin), true).values())
+					min = Math.min(min, pool.getIncumbent().get());
+			return min;
 		}
 
-		private int getMinBound() {
-			return minBound;
+		private int getTolerance() {
+			return tolerance;
 		}
 
-		private void setMinBound(int minBound) {
-			this.minBound = minBound;
+		private SearchStrategy getStrategy() {
+			return strategy;
 		}
 
-		private int getTolerance() {
-			return tolerance;
+		private void await() {
+			try {
+				latch.await();
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			}
+			endTime = System.nanoTime();
+		}
+
+		/**
+		 * Only valid once the group has finished running
+		 * @return total number of nodes taken off the queues by all threads
+		 */
+		private long getNodes() {
+			long sum = 0;
+			for (OptimizerThread ot : threads)
+				sum += ot.nodes;
+			return sum;
 		}
 
-		private CountDownLatch getLatch() {
-			return latch;
+		/**
+		 * @return wall-clock time in seconds from starting the threads to the last thread finishing
+		 */
+		private double getSeconds() {
+			return (endTime - startTime) / 1e9;
 		}
 
 	}
@@ -198,6 +1195,7 @@ public class ConstraintOptimizer {
 
 		protected OptimizerGroup group;
 		protected final int index;
+		protected long nodes;
 
 		public OptimizerThread(OptimizerGroup group, int index) {
 			this.group = group;
@@ -212,47 +1210,262 @@ public class ConstraintOptimizer {
 			super(group, index);
 		}
 
+		/**
+		 * In hybrid search, the best child of the last expanded node, expanded next without going through the frontier
+		 */
+		private Entry dive;
+
 		@Override
 		public void run() {
 			Entry nextEntry;
-			while ((nextEntry = group.getQueue().poll()) != null || !group.done()) {
-				if (nextEntry == null) {
-					group.setStopped(index, true);
+			while ((nextEntry = nextEntry()) != null) {
+				if (group.isStale(nextEntry)) {
+					group.close(nextEntry, index);
+					continue;
+				}
+				nodes++;
+				if ((nodes & 1023) == 0 && group.checkDeadline())
+					break;
+				BranchAndBound nextRoster = nextEntry.getRoster();
+
+				if (nextRoster.isComplete())
+					group.addLeaf(nextRoster, nextEntry.getOrigin(), index);
+				else if (nextEntry.getBound() <= group.getMinBound(nextEntry.getOrigin()) + group.getTolerance() && group.visit(nextEntry))
+					expand(nextEntry);
+				group.close(nextEntry, index);
+			}
+			group.stop(index);
+		}
+
+		/**
+		 * Creates the children of an entry that is within tolerance and pushes them onto the frontier
+		 * @param entry
+		 */
+		protected void expand(Entry entry) {
+			Children branches = entry.getRoster().children();
+			ArrayList<Entry> children = new ArrayList<Entry>();
+			while (branches.next()) {
+				int bound = branches.lowerBound();
+
+				if (bound <= group.getMinBound(entry.getOrigin()) + group.getTolerance()) {
+					children.add(new Entry(branches.get(), bound, entry.getOrigin()));
+				}
+			}
+			group.sortChildren(children);
+
+			// push in reverse so the most promising child ends up on top of the frontier
+			for (Entry child : children)
+				group.open(child);
+			int first = 0;
+			if (group.getStrategy() == SearchStrategy.HYBRID && !children.isEmpty()) {
+				dive = children.get(0);
+				first = 1;
+			}
+			for (int i = children.size() - 1; i >= first; i--)
+				group.push(index, children.get(i));
+		}
+
+		private Entry nextEntry() {
+			if (dive != null) {
+				Entry e = dive;
+				dive = null;
+				return e;
+			}
+			return group.take(index);
+		}
+
+	}
+
+	/**
+	 * 
+	 * OptimizerThreadC
+	 * Depth-first search on a trail: each entry taken from the frontier is searched in place by a single mutable node, applying and undoing
+	 * one assignment per step instead of creating a new node for every child. Only leaves, and children handed to idle threads, are copied
+	 * out of the trail. Entries that cannot be searched in place are expanded as by OptimizerThreadA.
+	 * 
+	 * @author jason
+	 *
+	 */
+	private static class OptimizerThreadC extends OptimizerThreadA {
+
+		/** children and their bounds at each depth below the entry being searched, reused between entries */
+		private int[][] children = new int[0][];
+		private int[][] bounds = new int[0][];
+
+		public OptimizerThreadC(OptimizerGroup group, int index) {
+			super(group, index);
+		}
+
+		@Override
+		protected void expand(Entry entry) {
+			Trail trail = entry.getRoster().trail();
+			if (trail == null) {
+				super.expand(entry);
+				return;
+			}
+			search(trail, 0, entry.getOrigin());
+		}
+
+		/**
+		 * Searches the subtree of the trail's current node, which is within tolerance and not a leaf, leaving the trail where it started
+		 * @param trail
+		 * @param depth depth of the current node below the entry
+		 * @param origin origin of the entry
+		 */
+		private void search(Trail trail, int depth, int origin) {
+			int n = trail.getChildCount();
+			if (depth == children.length) {
+				children = Arrays.copyOf(children, depth + 1);
+				bounds = Arrays.copyOf(bounds, depth + 1);
+			}
+			if (children[depth] == null || children[depth].length < n) {
+				children[depth] = new int[n];
+				bounds[depth] = new int[n];
+			}
+			int[] order = children[depth];
+			int[] bound = bounds[depth];
+
+			int count = 0;
+			for (int c = 0; c < n; c++) {
+				if (!trail.apply(c))
 					continue;
+				int b = trail.lowerBound();
+				trail.undo();
+				if (b <= group.getMinBound(origin) + group.getTolerance()) {
+					order[count] = c;
+					bound[count++] = b;
 				}
+			}
+			group.sortChildren(order, bound, count);
+
+			// with threads waiting for work and nothing left to steal, hand them every child but the most promising one
+			if (count > 1 && group.idle > 0 && group.isEmpty(index)) {
+				for (int i = count - 1; i >= 1; i--) {
+					trail.apply(order[i]);
+					Entry child = new Entry(trail.snapshot(), bound[i], origin);
+					group.open(child);
+					group.push(index, child);
+					trail.undo();
+				}
+				count = 1;
+			}
+
+			for (int i = 0; i < count; i++) {
+				if (group.isExpired())
+					return;
+				nodes++;
+				if ((nodes & 1023) == 0 && group.checkDeadline())
+					return;
+				if (bound[i] > group.getMinBound(origin) + group.getTolerance())
+					continue;
+				trail.apply(order[i]);
+				if (trail.isComplete())
+					group.addLeaf(trail.snapshot(), origin, index);
 				else
-					group.setStopped(index, false);
+					search(trail, depth + 1, origin);
+				trail.undo();
+			}
+		}
 
-				BranchAndBound nextRoster = nextEntry.getRoster();
+	}
+
+	/**
+	 * 
+	 * Beam
+	 * Shared state of a beam search: the current level of the tree, cut down to the width best entries by lower bound. Threads expand
+	 * interleaved slices of the level into their own lists; when every thread reaches the barrier, the lists are merged, pruned against the
+	 * incumbent and cut down to form the next level. Each level holds at most width entries, so memory and time per level are fixed by the
+	 * width regardless of the size of the tree.
+	 * 
+	 * @author jason
+	 *
+	 */
+	private static class Beam {
+
+		private final OptimizerGroup group;
+		private final int width;
+		private final CyclicBarrier barrier;
+		private final ArrayList<ArrayList<Entry>> next;
+		private volatile ArrayList<Entry> level;
+		private volatile boolean done;
+
+		public Beam(OptimizerGroup group, int width, int threads) {
+			this.group = group;
+			this.width = width;
+			next = new ArrayList<ArrayList<Entry>>();
+			for (int i = 0; i < threads; i++)
+				next.add(new ArrayList<Entry>());
+			level = new ArrayList<Entry>(group.seeds);
+			cut(level);
+			done = level.isEmpty();
+			barrier = new CyclicBarrier(threads, this::advance);
+		}
+
+		/**
+		 * Barrier action, run by the last thread to arrive once every thread has expanded its slice of the level
+		 */
+		private void advance() {
+			ArrayList<Entry> children = new ArrayList<Entry>();
+			for (ArrayList<Entry> list : next) {
+				children.addAll(list);
+				list.clear();
+			}
+			cut(children);
+			level = children;
+			done = children.isEmpty() || group.isExpired();
+		}
+
+		private void cut(ArrayList<Entry> entries) {
+			int max = group.getMinBound() + group.getTolerance();
+			entries.removeIf(e -> e.getBound() > max);
+			if (entries.size() > width) {
+				Collections.sort(entries, BY_BOUND);
+				entries.subList(width, entries.size()).clear();
+				group.truncated = true;
+			}
+		}
+
+	}
+
+	private static class OptimizerThreadB extends OptimizerThread {
 
-				if (nextRoster.isComplete()) {
-					int nextBound = nextRoster.score();
+		private final Beam beam;
 
-					if (nextBound < group.getMinBound()) {
-						group.getOutput().clear();
-						group.getOutput().push(nextEntry);
-						group.setMinBound(nextBound);
-						System.out.println("\nnew minimum score found: " + nextBound);
+		public OptimizerThreadB(OptimizerGroup group, int index, Beam beam) {
+			super(group, index);
+			this.beam = beam;
+		}
+
+		@Override
+		public void run() {
+			int threads = beam.next.size();
+			ArrayList<Entry> children = beam.next.get(index);
+			while (!beam.done) {
+				ArrayList<Entry> level = beam.level;
+				for (int i = index; i < level.size(); i += threads) {
+					Entry entry = level.get(i);
+					BranchAndBound roster = entry.getRoster();
+					nodes++;
+					if (roster.isComplete()) {
+						group.addLeaf(roster, entry.getOrigin(), index);
+						continue;
 					}
-					else if (nextBound <= group.getMinBound() + group.getTolerance()) {
-						group.getOutput().push(nextEntry);
-						int size = group.getOutput().size();
-						if (size % Math.pow(10, Math.floor(Math.log10(size))) == 0)
-							System.out.println(group.getOutput().size() + " rosters with score " + group.getMinBound());
+					Children branches = roster.children();
+					while (branches.next()) {
+						int bound = branches.lowerBound();
+						if (bound <= group.getMinBound() + group.getTolerance())
+							children.add(new Entry(branches.get(), bound, entry.getOrigin()));
 					}
 				}
-				else if (nextEntry.getBound() <= group.getMinBound() + group.getTolerance()) {
-					ArrayList<BranchAndBound> branches = nextRoster.branch();
-					for (BranchAndBound nextNextRoster : branches) {
-						int bound = nextNextRoster.lowerBound();
-
-						if (bound <= group.getMinBound() + group.getTolerance()) {
-							group.getQueue().push(new Entry(nextNextRoster, bound));
-						}
-					}
+				group.checkDeadline();
+				try {
+					beam.barrier.await();
+				} catch (InterruptedException | BrokenBarrierException e) {
+					e.printStackTrace();
+					break;
 				}
 			}
-			group.getLatch().countDown();
+			group.stop(index);
 		}
 
 	}
@@ -266,10 +1479,21 @@ public class ConstraintOptimizer {
 
 		private BranchAndBound roster;
 		private int bound;
+		private int origin;
 
 		public Entry(BranchAndBound roster, int bound) {
+			this(roster, bound, 0);
+		}
+
+		/**
+		 * @param roster
+		 * @param bound
+		 * @param origin score of the round 1 roster a round 2 entry descends from
+		 */
+		public Entry(BranchAndBound roster, int bound, int origin) {
 			this.roster = roster;
 			this.bound = bound;
+			this.origin = origin;
 		}
 
 		public BranchAndBound getRoster() {
@@ -280,6 +1504,10 @@ public class ConstraintOptimizer {
 			return bound;
 		}
 
+		public int getOrigin() {
+			return origin;
+		}
+
 	}
 
 	public static interface BranchAndBound {
@@ -303,6 +1531,16 @@ public class ConstraintOptimizer {
 		 */
 		public ArrayList<BranchAndBound> branch();
 
+		/**
+		 * Children of the node as a cursor, whose bounds can be read before the children are built. Nodes that can bound a child without
+		 * building it override this so that pruned children are never built; by default every child is built by branch().
+		 * 
+		 * @return cursor over the children, in the order of branch()
+		 */
+		public default Children children() {
+			return new Children.Built(branch());
+		}
+
 		/**
 		 * Computes a lower bound on the score for the subtree
 		 * 
@@ -317,6 +1555,127 @@ public class ConstraintOptimizer {
 		 */
 		public int score();
 
+		/**
+		 * Hash of everything that determines the subtree. Two nodes with the same key have subtrees with the same rosters and scores,
+		 * so only one of them needs to be expanded when a transposition table is used.
+		 * 
+		 * @return key of the node, or 0 if the node cannot be matched with other nodes
+		 */
+		public default long key() {
+			return 0;
+		}
+
+		/**
+		 * Called on a leaf that is kept as a solution
+		 * 
+		 * @return the leaf with only what is needed to rebuild the roster, so the tree above it can be collected
+		 */
+		public default BranchAndBound compact() {
+			return this;
+		}
+
+		/**
+		 * @return fingerprint of a leaf, equal for leaves that are the same roster, or null if leaves are not checked for duplicates
+		 */
+		public default Fingerprint fingerprint() {
+			return null;
+		}
+
+		/**
+		 * @return the part of a decomposed problem the node belongs to, or null if its leaves are complete solutions
+		 */
+		public default Subproblem subproblem() {
+			return null;
+		}
+
+		/**
+		 * @return a trail starting at this node, or null if the node cannot be searched in place
+		 */
+		public default Trail trail() {
+			return null;
+		}
+
+	}
+
+	/**
+	 * Order in which each optimizer thread expands the nodes of its frontier
+	 */
+	public static enum SearchStrategy {
+
+		/** last in, first out */
+		DEPTH_FIRST("depth-first"),
+		/** lowest lower bound first */
+		BEST_FIRST("best-first"),
+		/** dive depth-first along the best child until the dive is pruned or hits a leaf, then restart from the best node in the frontier */
+		HYBRID("hybrid"),
+		/** level by level, keeping only a fixed number of the best nodes at each level; not exhaustive */
+		BEAM("beam"),
+		/** simulated annealing over complete rosters instead of either round's tree; not exhaustive */
+		ANNEAL("anneal"),
+		/**
+		 * round 2 only: depth-first, with each team's scheduling blocks solved exactly as min-cost flows, so that every node expanded leads
+		 * to a roster within tolerance
+		 */
+		FLOW("flow");
+
+		private final String name;
+
+		private SearchStrategy(String name) {
+			this.name = name;
+		}
+
+		/**
+		 * @param name name as written in the config file
+		 * @return the matching strategy, or null if there is none
+		 */
+		public static SearchStrategy fromName(String name) {
+			for (SearchStrategy s : values())
+				if (s.name.equals(name))
+					return s;
+			return null;
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+
+	}
+
+	/**
+	 * Order in which children with equal lower bounds are expanded
+	 */
+	public static enum TieBreak {
+
+		/** the order produced by branch(), i.e. lower team indices first and leaving a member off last */
+		STABLE("stable"),
+		/** the reverse of the order produced by branch() */
+		REVERSE("reverse"),
+		/** a random order, which spreads the first dives of different threads over different parts of the tree */
+		RANDOM("random");
+
+		private final String name;
+
+		private TieBreak(String name) {
+			this.name = name;
+		}
+
+		/**
+		 * @param name name as written in the config file
+		 * @return the matching tie break, or null if there is none
+		 */
+		public static TieBreak fromName(String name) {
+			for (TieBreak t : values())
+				if (t.name.equals(name))
+					return t;
+			return null;
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+
 	}
 
 	public static class OptimizerConfiguration {
@@ -324,6 +1683,18 @@ public class ConstraintOptimizer {
 		private int threads;
 		private int tolerance1;
 		private int tolerance2;
+		private SearchStrategy strategy1 = SearchStrategy.DEPTH_FIRST;
+		private SearchStrategy strategy2 = SearchStrategy.DEPTH_FIRST;
+		private int beamWidth = 1000;
+		private long annealSteps = 1000000;
+		private int tableSize;
+		private int spill = 100000;
+		private boolean warmStart = true;
+		private boolean trail;
+		private boolean decomposed = true;
+		private TieBreak tieBreak = TieBreak.STABLE;
+		private boolean pipelined;
+		private int deadline;
 
 		public OptimizerConfiguration(int threads, int tolerance1, int tolerance2) {
 			this.threads = threads;
@@ -335,6 +1706,125 @@ public class ConstraintOptimizer {
 			return threads;
 		}
 
+		public void setThreads(int threads) {
+			this.threads = threads;
+		}
+
+		public SearchStrategy getStrategy1() {
+			return strategy1;
+		}
+
+		public SearchStrategy getStrategy2() {
+			return strategy2;
+		}
+
+		public void setStrategies(SearchStrategy strategy1, SearchStrategy strategy2) {
+			this.strategy1 = strategy1;
+			this.strategy2 = strategy2;
+		}
+
+		/**
+		 * @return number of entries kept at each level of a beam search
+		 */
+		public int getBeamWidth() {
+			return beamWidth;
+		}
+
+		public void setBeamWidth(int beamWidth) {
+			this.beamWidth = beamWidth;
+		}
+
+		public TieBreak getTieBreak() {
+			return tieBreak;
+		}
+
+		public void setTieBreak(TieBreak tieBreak) {
+			this.tieBreak = tieBreak;
+		}
+
+		public long getAnnealSteps() {
+			return annealSteps;
+		}
+
+		/**
+		 * @param annealSteps number of moves tried by each annealing chain
+		 */
+		public void setAnnealSteps(long annealSteps) {
+			this.annealSteps = annealSteps;
+		}
+
+		/**
+		 * @return memory budget of the round 1 transposition table in megabytes, or 0 for no table
+		 */
+		public int getTableSize() {
+			return tableSize;
+		}
+
+		public void setTableSize(int tableSize) {
+			this.tableSize = tableSize;
+		}
+
+		/**
+		 * @return number of round 2 rosters kept in memory before the rest are written to a temporary file, or 0 to keep every roster in
+		 * memory
+		 */
+		public int getSpill() {
+			return spill;
+		}
+
+		public void setSpill(int spill) {
+			this.spill = spill;
+		}
+
+		public boolean isWarmStart() {
+			return warmStart;
+		}
+
+		public void setWarmStart(boolean warmStart) {
+			this.warmStart = warmStart;
+		}
+
+		/**
+		 * @return if depth-first search runs in place on a trail instead of creating a node for every child
+		 */
+		public boolean isTrail() {
+			return trail;
+		}
+
+		public void setTrail(boolean trail) {
+			this.trail = trail;
+		}
+
+		/**
+		 * @return if round 2 searches the event choices of each team separately and combines the teams' best choices
+		 */
+		public boolean isDecomposed() {
+			return decomposed;
+		}
+
+		public void setDecomposed(boolean decomposed) {
+			this.decomposed = decomposed;
+		}
+
+		public boolean isPipelined() {
+			return pipelined;
+		}
+
+		public void setPipelined(boolean pipelined) {
+			this.pipelined = pipelined;
+		}
+
+		/**
+		 * @return number of seconds after which optimization stops with the best rosters found so far, or 0 for no limit
+		 */
+		public int getDeadline() {
+			return deadline;
+		}
+
+		public void setDeadline(int deadline) {
+			this.deadline = deadline;
+		}
+
 		public int getTolerance1() {
 			return tolerance1;
 		}
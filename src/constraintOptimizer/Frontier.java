@@ -0,0 +1,159 @@
+package constraintOptimizer;
+
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import constraintOptimizer.ConstraintOptimizer.Entry;
+
+/**
+ *
+ * Frontier
+ * The open nodes owned by a single optimizer thread. The owning thread pushes and polls; in a depth-first search, other threads only
+ * steal when they run out of work of their own, while in a best-first search every thread polls whichever frontier has the lowest bound
+ * at its head.
+ *
+ * @author jason
+ *
+ */
+public interface Frontier {
+
+	/**
+	 * Adds a freshly branched entry, called by the owning thread
+	 * @param entry
+	 */
+	public void push(Entry entry);
+
+	/**
+	 * Adds an entry that was handed in from outside the search (e.g. a round 2 input)
+	 * @param entry
+	 */
+	public void add(Entry entry);
+
+	/**
+	 * Takes the next entry to expand, called by the owning thread
+	 * @return next entry, or null if empty
+	 */
+	public Entry poll();
+
+	/**
+	 * Takes an entry for another thread
+	 * @return stolen entry, or null if empty
+	 */
+	public Entry steal();
+
+	/**
+	 * @return if the frontier has no entries
+	 */
+	public boolean isEmpty();
+
+	/**
+	 * @return lower bound of the entry poll() would take next, or Integer.MAX_VALUE if the frontier is empty
+	 */
+	public int peekBound();
+
+	/**
+	 * Last in, first out: the owner dives depth-first at the head, thieves take the shallowest nodes from the tail.
+	 */
+	public static class DepthFirstFrontier implements Frontier {
+
+		private final ConcurrentLinkedDeque<Entry> deque = new ConcurrentLinkedDeque<Entry>();
+
+		@Override
+		public void push(Entry entry) {
+			deque.push(entry);
+		}
+
+		@Override
+		public void add(Entry entry) {
+			deque.addLast(entry);
+		}
+
+		@Override
+		public Entry poll() {
+			return deque.pollFirst();
+		}
+
+		@Override
+		public Entry steal() {
+			return deque.pollLast();
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return deque.isEmpty();
+		}
+
+		@Override
+		public int peekBound() {
+			Entry entry = deque.peekFirst();
+			return entry == null ? Integer.MAX_VALUE : entry.getBound();
+		}
+
+	}
+
+	/**
+	 * Ordered by lower bound: the most promising node is always at the head. A thread does not stay with its own frontier while another has
+	 * a better head, so across the group nodes are still expanded in order of bound (see ConstraintOptimizer.OptimizerGroup).
+	 * Ties are broken last in, first out, so among equally promising nodes the search still dives toward a leaf instead of sweeping
+	 * breadth-first.
+	 */
+	public static class BestFirstFrontier implements Frontier {
+
+		private final PriorityBlockingQueue<Ranked> queue = new PriorityBlockingQueue<Ranked>();
+		private final AtomicLong counter = new AtomicLong();
+
+		@Override
+		public void push(Entry entry) {
+			queue.add(new Ranked(entry, counter.incrementAndGet()));
+		}
+
+		@Override
+		public void add(Entry entry) {
+			queue.add(new Ranked(entry, counter.incrementAndGet()));
+		}
+
+		@Override
+		public Entry poll() {
+			Ranked r = queue.poll();
+			return r == null ? null : r.entry;
+		}
+
+		@Override
+		public Entry steal() {
+			return poll();
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return queue.isEmpty();
+		}
+
+		@Override
+		public int peekBound() {
+			Ranked r = queue.peek();
+			return r == null ? Integer.MAX_VALUE : r.entry.getBound();
+		}
+
+		private static class Ranked implements Comparable<Ranked> {
+
+			private final Entry entry;
+			private final long sequence;
+
+			private Ranked(Entry entry, long sequence) {
+				this.entry = entry;
+				this.sequence = sequence;
+			}
+
+			@Override
+			public int compareTo(Ranked o) {
+				if (entry.getBound() != o.entry.getBound())
+					return Integer.compare(entry.getBound(), o.entry.getBound());
+				return Long.compare(o.sequence, sequence);
+			}
+
+		}
+
+	}
+
+}
@@ -0,0 +1,44 @@
+package constraintOptimizer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *
+ * Incumbent
+ * The best score found so far in an optimization round, shared by every thread in the round. The score only ever decreases, and an
+ * improvement made by one thread is visible to every other thread on its next read, so pruning tightens as soon as any thread finds a
+ * better roster.
+ *
+ * @author jason
+ *
+ */
+public class Incumbent {
+
+	private final AtomicInteger best;
+
+	/**
+	 * @param initial starting score, i.e. an upper bound on the optimal score
+	 */
+	public Incumbent(int initial) {
+		best = new AtomicInteger(initial);
+	}
+
+	public int get() {
+		return best.get();
+	}
+
+	/**
+	 * Lowers the incumbent to the given score if it is better than the current one
+	 * @param score
+	 * @return if this call improved the incumbent
+	 */
+	public boolean offer(int score) {
+		int current;
+		while (score < (current = best.get())) {
+			if (best.compareAndSet(current, score))
+				return true;
+		}
+		return false;
+	}
+
+}
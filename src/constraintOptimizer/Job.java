@@ -0,0 +1,130 @@
+package constraintOptimizer;
+
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import constraintOptimizer.ConstraintOptimizer.Entry;
+
+/**
+ *
+ * Job
+ * The round 2 search below one round 1 roster. Each job has its own frontier, so a large subtree is searched by the threads working on its
+ * job instead of burying the other round 1 rosters in a shared queue, and its own counters, so the search can report which round 1 roster
+ * the best rosters came from.
+ *
+ * Jobs are started in ascending order of round 1 score (see ORDER). A job is cancelled once the bound of its root is out of tolerance of
+ * the incumbent: every node below the root has at least the root's bound, so nothing below it can be kept.
+ *
+ * @author jason
+ *
+ */
+public class Job {
+
+	/** lower round 1 score first, then lower root bound, then the order the jobs were created */
+	public static final Comparator<Job> ORDER = new Comparator<Job>() {
+		@Override
+		public int compare(Job o1, Job o2) {
+			if (o1.root.getOrigin() != o2.root.getOrigin())
+				return Integer.compare(o1.root.getOrigin(), o2.root.getOrigin());
+			if (o1.root.getBound() != o2.root.getBound())
+				return Integer.compare(o1.root.getBound(), o2.root.getBound());
+			return Integer.compare(o1.id, o2.id);
+		}
+	};
+
+	private final int id;
+	private final Entry root;
+	private final Frontier frontier;
+	private final AtomicLong nodes = new AtomicLong();
+	private final AtomicInteger best = new AtomicInteger(Integer.MAX_VALUE);
+	private final AtomicInteger leaves = new AtomicInteger();
+	private volatile boolean started;
+	private volatile boolean cancelled;
+
+	/**
+	 * @param id number of the job among the jobs of its round, from 0
+	 * @param root root of the job's subtree, whose origin is the round 1 score
+	 * @param frontier empty frontier for the job's open nodes
+	 */
+	public Job(int id, Entry root, Frontier frontier) {
+		this.id = id;
+		this.root = root;
+		this.frontier = frontier;
+		frontier.add(root);
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public Entry getRoot() {
+		return root;
+	}
+
+	public Frontier getFrontier() {
+		return frontier;
+	}
+
+	/**
+	 * Marks the job as taken up by a thread
+	 */
+	public void start() {
+		started = true;
+	}
+
+	public boolean isStarted() {
+		return started;
+	}
+
+	/**
+	 * Stops the job: its open nodes are dropped, and a job that has not been started never is
+	 */
+	public void cancel() {
+		cancelled = true;
+		while (frontier.steal() != null)
+			;
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * @param nodes number of nodes a thread explored for the job
+	 */
+	public void addNodes(long nodes) {
+		this.nodes.addAndGet(nodes);
+	}
+
+	/**
+	 * @return number of nodes explored for the job so far, counted when a thread leaves the job
+	 */
+	public long getNodes() {
+		return nodes.get();
+	}
+
+	/**
+	 * Records a leaf of the job that was offered to the solution pool
+	 * @param score
+	 */
+	public void addLeaf(int score) {
+		leaves.incrementAndGet();
+		best.accumulateAndGet(score, Math::min);
+	}
+
+	/**
+	 * @return number of leaves the job offered to the solution pool
+	 */
+	public int getLeaves() {
+		return leaves.get();
+	}
+
+	/**
+	 * @return best score of a leaf of the job, or Integer.MAX_VALUE if it found none
+	 */
+	public int getBest() {
+		return best.get();
+	}
+
+}
@@ -13,14 +13,16 @@ import java.io.Writer;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashSet;
 import java.util.Scanner;
 
 import constraintOptimizer.ConstraintOptimizer.OptimizerConfiguration;
+import constraintOptimizer.ConstraintOptimizer.SearchStrategy;
+import constraintOptimizer.ConstraintOptimizer.TieBreak;
 import scioly.CompleteTeamRoster;
 import scioly.Team;
 import scioly.Team.TeamMember;
 import scioly.TeamRosterConfiguration;
+import scioly.TeamRosterConfiguration.MemberOrdering;
 import scioly.Tournament;
 import scioly.Tournament.ScheduleException;
 import scioly.Tournament.TournamentEvent;
@@ -42,13 +44,33 @@ public class Main {
 		String path = new File(Main.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getParent();
 		Config configuration = parseConfig(new FileInputStream(path + "/config.txt"));
 
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-d") || args[i].equals("--deadline")) {
+				if (i + 1 >= args.length) {
+					System.err.println("Expected number of seconds after " + args[i]);
+					System.exit(1);
+				}
+				try {
+					configuration.getOptimizerConfiguration().setDeadline(Integer.parseInt(args[++i]));
+				} catch (NumberFormatException e) {
+					System.err.println("'" + args[i] + "' is not a number");
+					System.exit(1);
+				}
+				System.out.println("deadline: " + args[i] + " s");
+			}
+			else {
+				System.err.println("Unknown option '" + args[i] + "'\nusage: java -jar assigner.jar [-d | --deadline seconds]");
+				System.exit(1);
+			}
+		}
+
 		System.out.println("\noptimize? (Y/n)");
 		String s = scanner.nextLine();
 		if (!s.equals("") && !s.toLowerCase().equals("y"))
 			System.exit(0);
 
 		System.out.println("optimizing...");
-		HashSet<CompleteTeamRoster> rosters = new ConstraintOptimizer(configuration.getOptimizerConfiguration(), configuration.getTeamRosterConfiguration()).optimize();
+		Iterable<CompleteTeamRoster> rosters = new ConstraintOptimizer(configuration.getOptimizerConfiguration(), configuration.getTeamRosterConfiguration()).optimize();
 
 		System.out.println("\noutput file? (default 'rosters.csv')");
 		s = scanner.nextLine();
@@ -59,8 +81,16 @@ public class Main {
 		try (Writer writer = new BufferedWriter(new OutputStreamWriter(
 				new FileOutputStream(path + "/" + s), "utf-8"))) {
 			for (CompleteTeamRoster roster : rosters) {
-				writer.write(roster.csv());
-				writer.write("\n");
+				if (configuration.isPermutations()) {
+					for (CompleteTeamRoster permutation : roster.getPermutations()) {
+						writer.write(permutation.csv());
+						writer.write("\n");
+					}
+				}
+				else {
+					writer.write(roster.csv());
+					writer.write("\n");
+				}
 			}
 		}
 		System.out.println("done!");
@@ -78,6 +108,20 @@ public class Main {
 		int threads = 4;
 		int tolerance1 = 0;
 		int tolerance2 = 0;
+		SearchStrategy strategy1 = SearchStrategy.DEPTH_FIRST;
+		SearchStrategy strategy2 = SearchStrategy.DEPTH_FIRST;
+		int beamWidth = 1000;
+		long annealSteps = 1000000;
+		int tableSize = 0;
+		int spill = 100000;
+		TieBreak tieBreak = TieBreak.STABLE;
+		boolean pipelined = false;
+		boolean warmStart = true;
+		boolean trail = false;
+		boolean decompose = true;
+		int deadline = 0;
+		boolean permutations = false;
+		MemberOrdering ordering = MemberOrdering.DEFAULT;
 
 		ArrayList<String> stages = new ArrayList<String>(Arrays.asList(new String[] {
 				"config",
@@ -134,6 +178,127 @@ public class Main {
 						System.exit(1);
 					}
 				}
+				else if (line.split(" : ")[0].equals("search")) {
+					String[] ss = line.split(" : ")[1].split(", ");
+					if (ss.length > 2) {
+						System.err.println("Expected 1 or 2 search strategies separated by ', ' on line " + lineNum);
+						System.exit(1);
+					}
+					for (String s : ss) {
+						if (SearchStrategy.fromName(s) == null) {
+							System.err.println("'" + s + "' is not a search strategy, expected depth-first, best-first, hybrid, beam, anneal or flow (line " + lineNum + ")");
+							System.exit(1);
+						}
+					}
+					if (ss.length > 1 && (SearchStrategy.fromName(ss[0]) == SearchStrategy.ANNEAL || SearchStrategy.fromName(ss[1]) == SearchStrategy.ANNEAL)) {
+						System.err.println("anneal replaces both rounds, so it cannot be combined with another strategy (line " + lineNum + ")");
+						System.exit(1);
+					}
+					if (SearchStrategy.fromName(ss[0]) == SearchStrategy.FLOW) {
+						System.err.println("flow only solves round 2, so it has to be given as the second of two strategies (line " + lineNum + ")");
+						System.exit(1);
+					}
+					strategy1 = SearchStrategy.fromName(ss[0]);
+					strategy2 = SearchStrategy.fromName(ss[ss.length - 1]);
+				}
+				else if (line.split(" : ")[0].equals("ties")) {
+					tieBreak = TieBreak.fromName(line.split(" : ")[1]);
+					if (tieBreak == null) {
+						System.err.println("'" + line.split(" : ")[1] + "' is not a tie break, expected stable, reverse or random (line " + lineNum + ")");
+						System.exit(1);
+					}
+				}
+				else if (line.split(" : ")[0].equals("table")) {
+					try {
+						tableSize = Integer.parseInt(line.split(" : ")[1]);
+					} catch (NumberFormatException e) {
+						System.err.println("'" + line.split(" : ")[1] + "' is not a number (line " + lineNum + ")");
+						System.exit(1);
+					}
+				}
+				else if (line.split(" : ")[0].equals("spill")) {
+					try {
+						spill = Integer.parseInt(line.split(" : ")[1]);
+					} catch (NumberFormatException e) {
+						System.err.println("'" + line.split(" : ")[1] + "' is not a number (line " + lineNum + ")");
+						System.exit(1);
+					}
+				}
+				else if (line.split(" : ")[0].equals("anneal")) {
+					try {
+						annealSteps = Long.parseLong(line.split(" : ")[1]);
+					} catch (NumberFormatException e) {
+						System.err.println("'" + line.split(" : ")[1] + "' is not a number (line " + lineNum + ")");
+						System.exit(1);
+					}
+				}
+				else if (line.split(" : ")[0].equals("beam")) {
+					try {
+						beamWidth = Integer.parseInt(line.split(" : ")[1]);
+					} catch (NumberFormatException e) {
+						System.err.println("'" + line.split(" : ")[1] + "' is not a number (line " + lineNum + ")");
+						System.exit(1);
+					}
+					if (beamWidth < 1) {
+						System.err.println("'" + line.split(" : ")[1] + "' is not a beam width, expected at least 1 node per level (line " + lineNum + ")");
+						System.exit(1);
+					}
+				}
+				else if (line.split(" : ")[0].equals("pipeline")) {
+					String s = line.split(" : ")[1];
+					if (!s.equals("true") && !s.equals("false")) {
+						System.err.println("Expected 'true' or 'false' on line " + lineNum);
+						System.exit(1);
+					}
+					pipelined = s.equals("true");
+				}
+				else if (line.split(" : ")[0].equals("warmstart")) {
+					String s = line.split(" : ")[1];
+					if (!s.equals("true") && !s.equals("false")) {
+						System.err.println("Expected 'true' or 'false' on line " + lineNum);
+						System.exit(1);
+					}
+					warmStart = s.equals("true");
+				}
+				else if (line.split(" : ")[0].equals("trail")) {
+					String s = line.split(" : ")[1];
+					if (!s.equals("true") && !s.equals("false")) {
+						System.err.println("Expected 'true' or 'false' on line " + lineNum);
+						System.exit(1);
+					}
+					trail = s.equals("true");
+				}
+				else if (line.split(" : ")[0].equals("decompose")) {
+					String s = line.split(" : ")[1];
+					if (!s.equals("true") && !s.equals("false")) {
+						System.err.println("Expected 'true' or 'false' on line " + lineNum);
+						System.exit(1);
+					}
+					decompose = s.equals("true");
+				}
+				else if (line.split(" : ")[0].equals("deadline")) {
+					try {
+						deadline = Integer.parseInt(line.split(" : ")[1]);
+					} catch (NumberFormatException e) {
+						System.err.println("'" + line.split(" : ")[1] + "' is not a number (line " + lineNum + ")");
+						System.exit(1);
+					}
+				}
+				else if (line.split(" : ")[0].equals("permutations")) {
+					String s = line.split(" : ")[1];
+					if (!s.equals("true") && !s.equals("false")) {
+						System.err.println("Expected 'true' or 'false' on line " + lineNum);
+						System.exit(1);
+					}
+					permutations = s.equals("true");
+				}
+				else if (line.split(" : ")[0].equals("order")) {
+					ordering = MemberOrdering.fromName(line.split(" : ")[1]);
+					if (ordering == null) {
+						System.err.println("'" + line.split(" : ")[1] + "' is not a member ordering, expected default, stacks-first, most-events, rarest-events or most-conflicts (line " + lineNum + ")");
+						System.exit(1);
+					}
+				}
 				else if (line.split(" : ")[0].equals("tolerances")) {
 					String s = line.split(" : ")[1];
 					if (s.split(", ").length != 2) {
@@ -264,8 +429,20 @@ public class Main {
 			teamConfig.addStack(members[0], members[1]);
 		for (TeamMember[] members : unstacks)
 			teamConfig.addUnstack(members[0], members[1]);
+		teamConfig.setMemberOrdering(ordering);
 
 		OptimizerConfiguration optConfig = new OptimizerConfiguration(threads, tolerance1, tolerance2);
+		optConfig.setStrategies(strategy1, strategy2);
+		optConfig.setBeamWidth(beamWidth);
+		optConfig.setAnnealSteps(annealSteps);
+		optConfig.setTableSize(tableSize);
+		optConfig.setSpill(spill);
+		optConfig.setTieBreak(tieBreak);
+		optConfig.setPipelined(pipelined);
+		optConfig.setWarmStart(warmStart);
+		optConfig.setTrail(trail);
+		optConfig.setDecomposed(decompose);
+		optConfig.setDeadline(deadline);
 
 		System.out.println(String.format("parsed config file: \n\t%d blocks\n\t%d events (%d building)\n\t%d team members\n\t%d stacking rules\n\t%d unstacking rules",
 				timeslots.size(),
@@ -276,26 +453,38 @@ public class Main {
 		for (int i : targets)
 			System.out.print(i + " ");
 		System.out.println();
-		System.out.println(String.format("using %d threads, tolerances %d, %d", threads, tolerance1, tolerance2));
+		System.out.println(String.format("using %d threads, %s, %s search%s, tolerances %d, %d", threads, strategy1, strategy2, pipelined ? " (pipelined)" : "", tolerance1, tolerance2));
+		System.out.println("member order: " + ordering);
+		System.out.println("ties between children: " + tieBreak);
+		if (deadline > 0)
+			System.out.println(String.format("deadline: %d s", deadline));
+		if (tableSize > 0)
+			System.out.println(String.format("transposition table: %d MB", tableSize));
 
-		return new Config(optConfig, teamConfig);
+		return new Config(optConfig, teamConfig, permutations);
 	}
 
-	private static class Config {
+	static class Config {
 
 		private OptimizerConfiguration opt;
 		private TeamRosterConfiguration team;
+		private boolean permutations;
 
-		private Config(OptimizerConfiguration opt, TeamRosterConfiguration team) {
+		private Config(OptimizerConfiguration opt, TeamRosterConfiguration team, boolean permutations) {
 			this.opt = opt;
 			this.team = team;
+			this.permutations = permutations;
+		}
+
+		boolean isPermutations() {
+			return permutations;
 		}
 
-		private OptimizerConfiguration getOptimizerConfiguration() {
+		OptimizerConfiguration getOptimizerConfiguration() {
 			return opt;
 		}
 
-		private TeamRosterConfiguration getTeamRosterConfiguration() {
+		TeamRosterConfiguration getTeamRosterConfiguration() {
 			return team;
 		}
 
@@ -0,0 +1,79 @@
+package constraintOptimizer;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+
+import constraintOptimizer.ConstraintOptimizer.OptimizerConfiguration;
+import constraintOptimizer.Main.Config;
+
+/**
+ *
+ * ScalingReport
+ * Runs the optimizer on the same config file at increasing thread counts and reports nodes explored per second, to check how well the
+ * search scales with the number of cores.
+ *
+ * usage: java -cp assigner.jar constraintOptimizer.ScalingReport [config file] [thread counts...]
+ * defaults to 'config.txt' next to the .jar file and 1, 2, 4, 8, 16, 32 threads
+ *
+ * @author jason
+ *
+ */
+public class ScalingReport {
+
+	public static void main(String[] args) throws IOException, URISyntaxException {
+		String config;
+		if (args.length > 0)
+			config = args[0];
+		else
+			config = new File(ScalingReport.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getParent() + "/config.txt";
+
+		ArrayList<Integer> threadCounts = new ArrayList<Integer>();
+		for (int i = 1; i < args.length; i++)
+			threadCounts.add(Integer.parseInt(args[i]));
+		if (threadCounts.isEmpty())
+			for (int i = 1; i <= 32; i *= 2)
+				threadCounts.add(i);
+
+		ArrayList<String> rows = new ArrayList<String>();
+		double baseline = 0;
+		for (int threads : threadCounts) {
+			Config configuration = Main.parseConfig(new FileInputStream(config));
+			OptimizerConfiguration opt = configuration.getOptimizerConfiguration();
+			opt.setThreads(threads);
+			ConstraintOptimizer optimizer = new ConstraintOptimizer(opt, configuration.getTeamRosterConfiguration());
+			optimizer.optimize();
+
+			long nodes = optimizer.getNodes(1) + optimizer.getNodes(2);
+			double seconds = optimizer.getSeconds(1) + optimizer.getSeconds(2);
+			double rate = nodes > 0 && seconds > 0 ? nodes / seconds : 0;
+			if (baseline == 0)
+				baseline = rate;
+			rows.add(String.format("%7d %14s %14s %14s %10.2f %9s",
+					threads,
+					rate(optimizer.getNodes(1), optimizer.getSeconds(1)),
+					rate(optimizer.getNodes(2), optimizer.getSeconds(2)),
+					rate(nodes, seconds), seconds,
+					rate > 0 && baseline > 0 ? String.format("%.2fx", rate / baseline) : "-"));
+		}
+
+		System.out.println("\n========\n\nthread scaling report for " + config + "\n");
+		System.out.println(String.format("%7s %14s %14s %14s %10s %9s", "threads", "round 1 n/s", "round 2 n/s", "total n/s", "wall (s)", "speedup"));
+		for (String row : rows)
+			System.out.println(row);
+	}
+
+	/**
+	 * @param nodes
+	 * @param seconds
+	 * @return nodes per second, or "-" for a round that explored no nodes, like round 1 of an annealing run or a round cut off by the deadline
+	 */
+	private static String rate(long nodes, double seconds) {
+		if (nodes == 0 || seconds == 0)
+			return "-";
+		return String.format("%.0f", nodes / seconds);
+	}
+
+}
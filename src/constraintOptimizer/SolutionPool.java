@@ -0,0 +1,167 @@
+package constraintOptimizer;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import constraintOptimizer.ConstraintOptimizer.Entry;
+import scioly.Fingerprint;
+
+/**
+ *
+ * SolutionPool
+ * Collects the leaves found in an optimization round whose scores are within tolerance of the incumbent. Leaves are kept in buckets by
+ * score, so whenever the incumbent improves, every bucket that has fallen outside [incumbent, incumbent + tolerance] is dropped at once,
+ * and a leaf added concurrently with an improvement is never lost unless its own score is out of range.
+ *
+ * With a SolutionSink, the pool keeps about the sink's capacity of leaves in memory and writes the rest to the sink; concurrent adds may
+ * briefly overshoot the capacity by a few leaves.
+ *
+ * A roster reached twice is only kept once. Equal rosters have equal scores, so each bucket remembers the Fingerprints of the leaves it
+ * holds in memory, and they are dropped along with it; leaves written to the sink are checked for duplicates as they are read back.
+ *
+ * A pipelined round 2 keeps a pool for the leaves below each round 1 score, each with its own incumbent, and merges the pools whose round 1
+ * score stayed within tolerance once both rounds are done (see addAll()).
+ *
+ * @author jason
+ *
+ */
+public class SolutionPool {
+
+	/** held count of a dropped bucket, low enough to stay negative however many adds still reach it */
+	private static final int DROPPED = Integer.MIN_VALUE;
+
+	private final Incumbent incumbent;
+	private final int tolerance;
+	private final ConcurrentSkipListMap<Integer, Bucket> buckets = new ConcurrentSkipListMap<Integer, Bucket>();
+	private SolutionSink sink;
+
+	public SolutionPool(Incumbent incumbent, int tolerance) {
+		this.incumbent = incumbent;
+		this.tolerance = tolerance;
+	}
+
+	/**
+	 * @param sink sink for leaves beyond its capacity, or null to keep every leaf in memory
+	 */
+	public void setSink(SolutionSink sink) {
+		this.sink = sink;
+	}
+
+	public SolutionSink getSink() {
+		return sink;
+	}
+
+	public Incumbent getIncumbent() {
+		return incumbent;
+	}
+
+	/**
+	 * Offers a leaf to the pool, improving the incumbent if the leaf beats it
+	 * @param leaf entry whose bound is the actual score of the leaf
+	 * @return number of leaves now in the pool with the same score, or 0 if the leaf was rejected or is already held
+	 */
+	public int add(Entry leaf) {
+		int score = leaf.getBound();
+		boolean improved = incumbent.offer(score);
+		if (score > incumbent.get() + tolerance)
+			return 0;
+
+		Bucket bucket = buckets.computeIfAbsent(score, k -> new Bucket());
+		Fingerprint fingerprint = leaf.getRoster().fingerprint();
+		if (fingerprint != null && bucket.fingerprints.contains(fingerprint))
+			return 0;
+		if (sink != null && !sink.hold())
+			sink.write(leaf);
+		else {
+			if (fingerprint != null && !bucket.fingerprints.add(fingerprint)) {
+				if (sink != null)
+					sink.release(1);
+				return 0;
+			}
+			// the bucket may have been dropped since it was looked up, in which case drop() did not count this leaf
+			if (bucket.held.getAndIncrement() < 0) {
+				if (sink != null)
+					sink.release(1);
+				return 0;
+			}
+			bucket.entries.add(leaf);
+		}
+		int count = bucket.count.incrementAndGet();
+		if (improved)
+			drop();
+		return count;
+	}
+
+	/**
+	 * Moves the leaves of another pool into this one, as if each had been added here. Leaves the other pool wrote to the sink they share are
+	 * counted, and stay in the sink. Not safe to call while either pool is being added to.
+	 * @param other pool sharing this pool's sink
+	 */
+	public void addAll(SolutionPool other) {
+		for (Map.Entry<Integer, Bucket> e : other.buckets.entrySet()) {
+			Bucket bucket = buckets.computeIfAbsent(e.getKey(), k -> new Bucket());
+			bucket.entries.addAll(e.getValue().entries);
+			bucket.fingerprints.addAll(e.getValue().fingerprints);
+			bucket.held.addAndGet(e.getValue().held.get());
+			bucket.count.addAndGet(e.getValue().count.get());
+			incumbent.offer(e.getKey());
+		}
+		other.buckets.clear();
+		drop();
+	}
+
+	/**
+	 * Drops every bucket above the incumbent plus tolerance
+	 */
+	private void drop() {
+		Map<Integer, Bucket> dropped = buckets.tailMap(incumbent.get() + tolerance, false);
+		for (Bucket b : dropped.values()) {
+			int held = b.held.getAndSet(DROPPED);
+			if (sink != null && held >= 0)
+				sink.release(held);
+		}
+		dropped.clear();
+	}
+
+	public boolean isEmpty() {
+		return buckets.isEmpty();
+	}
+
+	/**
+	 * @return number of leaves with score in [incumbent, incumbent + tolerance], including those written to the sink, where a roster can be
+	 *         counted twice
+	 */
+	public int size() {
+		int size = 0;
+		for (Bucket bucket : buckets.headMap(incumbent.get() + tolerance, true).values())
+			size += bucket.count.get();
+		return size;
+	}
+
+	/**
+	 * @return leaves held in memory with score in [incumbent, incumbent + tolerance], best first; the rest are read back from the sink
+	 */
+	public ArrayList<Entry> getSolutions() {
+		ArrayList<Entry> solutions = new ArrayList<Entry>();
+		for (Bucket bucket : buckets.headMap(incumbent.get() + tolerance, true).values())
+			solutions.addAll(bucket.entries);
+		return solutions;
+	}
+
+	private static class Bucket {
+
+		private final ConcurrentLinkedQueue<Entry> entries = new ConcurrentLinkedQueue<Entry>();
+		private final AtomicInteger count = new AtomicInteger();
+		/** number of entries held in memory, or negative once the bucket is dropped */
+		private final AtomicInteger held = new AtomicInteger();
+		/** fingerprints of the entries held in memory */
+		private final Set<Fingerprint> fingerprints = ConcurrentHashMap.newKeySet();
+
+	}
+
+}
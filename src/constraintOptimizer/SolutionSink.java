@@ -0,0 +1,203 @@
+package constraintOptimizer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import constraintOptimizer.ConstraintOptimizer.Entry;
+import scioly.Fingerprint;
+import scioly.RosterVector;
+import scioly.TeamRosterConfiguration;
+
+/**
+ *
+ * SolutionSink
+ * Holds the round 2 rosters that do not fit in memory. A SolutionPool keeps up to the sink's capacity of leaves itself and streams every
+ * further leaf it accepts to a temporary file, so a round with a wide tolerance or many equally good rosters uses a fixed amount of heap.
+ *
+ * Leaves are written as they are found, so the file also holds leaves that a later incumbent pushed out of tolerance, or whose round 1
+ * roster was pushed out of round 1 tolerance in a pipelined run; each leaf is written with its origin, and reading the file back filters
+ * the leaves against the final incumbent and the final round 1 bound.
+ *
+ * Several pools can share a sink, in which case the capacity applies to the leaves they hold in memory together.
+ *
+ * The pools only remember the fingerprints of the leaves they hold, so the file can hold the same roster twice. Each leaf is written with
+ * its fingerprint, and reading the file back skips rosters that were already read or are held in memory.
+ *
+ * @author jason
+ *
+ */
+public class SolutionSink {
+
+	private final TeamRosterConfiguration configuration;
+	private final int capacity;
+	private File file;
+	private DataOutputStream out;
+	private long written;
+	/** number of leaves held in memory by the pools writing to the sink */
+	private final AtomicInteger held = new AtomicInteger();
+
+	/**
+	 * @param configuration
+	 * @param capacity number of leaves a SolutionPool keeps in memory before writing to the sink
+	 */
+	public SolutionSink(TeamRosterConfiguration configuration, int capacity) {
+		this.configuration = configuration;
+		this.capacity = capacity;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Makes room in memory for a leaf, unless the pools writing to the sink already hold its capacity of leaves
+	 * @return if the leaf can be held in memory instead of written to the sink
+	 */
+	public boolean hold() {
+		if (held.get() >= capacity)
+			return false;
+		held.incrementAndGet();
+		return true;
+	}
+
+	/**
+	 * @param count number of leaves held in memory that a pool dropped
+	 */
+	public void release(int count) {
+		held.addAndGet(-count);
+	}
+
+	/**
+	 * Appends a leaf, its origin and its fingerprint to the file, creating the file on the first write
+	 * @param leaf entry whose roster is a RosterVector
+	 */
+	public synchronized void write(Entry leaf) {
+		try {
+			if (out == null) {
+				file = File.createTempFile("rosters", ".bin");
+				file.deleteOnExit();
+				out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+			}
+			out.writeInt(leaf.getOrigin());
+			Fingerprint fingerprint = leaf.getRoster().fingerprint();
+			out.writeBoolean(fingerprint != null);
+			if (fingerprint != null)
+				fingerprint.write(out);
+			((RosterVector) leaf.getRoster()).write(out);
+			written++;
+		} catch (IOException e) {
+			throw new UncheckedIOException("could not write roster to " + file, e);
+		}
+	}
+
+	/**
+	 * @return number of leaves written, including those since pushed out of tolerance
+	 */
+	public synchronized long getWritten() {
+		return written;
+	}
+
+	/**
+	 * Leaves read back from the file. The file is closed once the last leaf has been read, or by close() if the reader is dropped early.
+	 */
+	public interface Reader extends Iterator<RosterVector>, Closeable {
+
+		@Override
+		public void close();
+
+	}
+
+	/**
+	 * Reads the leaves back in the order they were written. Only valid once the round has finished.
+	 * @param maxScore highest score to return, i.e. the final incumbent plus tolerance
+	 * @param maxOrigin highest origin to return, i.e. the final round 1 incumbent plus tolerance in a pipelined run
+	 * @param seen fingerprints of rosters not to return, such as those held in memory; the fingerprint of every leaf returned is added
+	 * @return leaves with score at most maxScore and origin at most maxOrigin, each roster once
+	 */
+	public synchronized Reader read(int maxScore, int maxOrigin, Set<Fingerprint> seen) {
+		if (out == null)
+			return new Reader() {
+
+				@Override
+				public boolean hasNext() {
+					return false;
+				}
+
+				@Override
+				public RosterVector next() {
+					throw new NoSuchElementException();
+				}
+
+				@Override
+				public void close() {
+				}
+
+			};
+		try {
+			out.flush();
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			return new Reader() {
+
+				private RosterVector next = advance();
+
+				private RosterVector advance() {
+					try {
+						while (true) {
+							int origin = in.readInt();
+							Fingerprint fingerprint = in.readBoolean() ? Fingerprint.read(in) : null;
+							RosterVector v = RosterVector.read(configuration, in);
+							if (v.score() <= maxScore && origin <= maxOrigin && (fingerprint == null || seen.add(fingerprint)))
+								return v;
+						}
+					} catch (EOFException e) {
+						close();
+						return null;
+					} catch (IOException e) {
+						close();
+						throw new UncheckedIOException("could not read rosters from " + file, e);
+					}
+				}
+
+				@Override
+				public void close() {
+					try {
+						in.close();
+					} catch (IOException e) {
+						e.printStackTrace();
+					}
+				}
+
+				@Override
+				public boolean hasNext() {
+					return next != null;
+				}
+
+				@Override
+				public RosterVector next() {
+					if (next == null)
+						throw new NoSuchElementException();
+					RosterVector v = next;
+					next = advance();
+					return v;
+				}
+
+			};
+		} catch (IOException e) {
+			throw new UncheckedIOException("could not read rosters from " + file, e);
+		}
+	}
+
+}
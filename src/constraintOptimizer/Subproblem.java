@@ -0,0 +1,43 @@
+package constraintOptimizer;
+
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+
+import constraintOptimizer.ConstraintOptimizer.BranchAndBound;
+
+/**
+ *
+ * Subproblem
+ * One of several independent parts of a problem, each searched as its own subtree. The leaves of a subproblem are not solutions: the
+ * subproblem keeps them, and once every part of the problem has been searched, the parts' leaves are combined into complete solutions.
+ * A node of a subproblem returns it from BranchAndBound.subproblem(), and its bound and score are those of the whole problem, counting
+ * every other part at its lowest possible score, so it is pruned against the incumbent like any other node.
+ *
+ * The searching threads report every node of the subproblem they add to the search and every node they are done with, so the subproblem
+ * knows when its subtree has been searched, whichever threads searched it.
+ *
+ * @author jason
+ *
+ */
+public interface Subproblem {
+
+	/**
+	 * Called before a node of the subproblem is added to the search
+	 */
+	public void open();
+
+	/**
+	 * Keeps a leaf of the subproblem that is within tolerance
+	 * @param leaf
+	 */
+	public void addLeaf(BranchAndBound leaf);
+
+	/**
+	 * Called once a node of the subproblem has been expanded, pruned or kept as a leaf. Closing the last open node of the last part of the
+	 * problem combines the parts' leaves into complete solutions.
+	 * @param limit highest score of a solution worth keeping, read again as solutions are produced
+	 * @param solutions receives each complete solution with a score up to the limit
+	 */
+	public void close(IntSupplier limit, Consumer<BranchAndBound> solutions);
+
+}
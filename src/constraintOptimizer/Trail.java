@@ -0,0 +1,50 @@
+package constraintOptimizer;
+
+import constraintOptimizer.ConstraintOptimizer.BranchAndBound;
+
+/**
+ *
+ * Trail
+ * A single mutable node of a branch and bound tree that moves through the tree in place: apply() assigns one child's choice and undo()
+ * takes back the most recent one, so a depth-first search allocates nothing per node. A trail is owned by one thread; snapshot() copies
+ * the current node into an ordinary BranchAndBound node when it has to outlive the trail, as for a leaf or for work handed to another
+ * thread.
+ *
+ * @author jason
+ *
+ */
+public interface Trail {
+
+	/**
+	 * @return if the current node is a leaf
+	 */
+	public boolean isComplete();
+
+	/**
+	 * @return lower bound score for the subtree of the current node
+	 */
+	public int lowerBound();
+
+	/**
+	 * @return number of children of the current node, including any that apply() will reject
+	 */
+	public int getChildCount();
+
+	/**
+	 * Moves to a child of the current node
+	 * @param child index of the child, in the order branch() would produce it
+	 * @return if the child exists; if not, the trail is left unchanged
+	 */
+	public boolean apply(int child);
+
+	/**
+	 * Moves back to the parent of the current node
+	 */
+	public void undo();
+
+	/**
+	 * @return copy of the current node
+	 */
+	public BranchAndBound snapshot();
+
+}
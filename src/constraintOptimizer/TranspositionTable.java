@@ -0,0 +1,97 @@
+package constraintOptimizer;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ *
+ * TranspositionTable
+ * Remembers nodes that have already been expanded, so that a node reached again through a different order of assignments is skipped
+ * instead of searching an equivalent subtree a second time. Two nodes are equivalent when their keys match (see BranchAndBound.key()).
+ *
+ * The table has a fixed size and never allocates after it is created. Each slot packs the upper 48 bits of a key with the lower bound the
+ * node was expanded at, and slots are grouped into buckets of 4 chosen by the lower bits of the key. When a bucket is full, the entry with
+ * the highest bound is evicted, since a high bound is the least likely to let a later node be skipped. Slots are read and written without
+ * locks; a lost race only means a node is expanded twice.
+ *
+ * Keys are 64-bit hashes, and a slot only keeps part of one, so two nodes that are not equivalent can still match. The later node is then
+ * skipped wrongly and the rosters below it are lost. Since a skip cannot be told apart from such a collision, a search that skipped any
+ * node does not claim to be optimal (see OptimizerGroup.isExhaustive()).
+ *
+ * @author jason
+ *
+ */
+public class TranspositionTable {
+
+	private static final int WAYS = 4;
+	private static final long BOUND_MASK = 0xFFFF;
+
+	private final AtomicLongArray slots;
+	private final int bucketMask;
+	private final AtomicLong skipped = new AtomicLong();
+
+	/**
+	 * @param megabytes memory budget; rounded down to a power of two number of buckets
+	 */
+	public TranspositionTable(int megabytes) {
+		long slotCount = Math.max(WAYS, (long) megabytes * 1024 * 1024 / Long.BYTES);
+		int buckets = Integer.highestOneBit((int) Math.min(slotCount / WAYS, 1 << 28));
+		slots = new AtomicLongArray(buckets * WAYS);
+		bucketMask = buckets - 1;
+	}
+
+	/**
+	 * Records that a node is about to be expanded, unless an equivalent node was already expanded with an equal or lower bound
+	 * @param key key of the node, nonzero
+	 * @param bound lower bound of the node
+	 * @return if the node should be expanded
+	 */
+	public boolean visit(long key, int bound) {
+		long tag = key & ~BOUND_MASK;
+		if (tag == 0)
+			tag = BOUND_MASK + 1;
+		long entry = tag | Math.min(bound, BOUND_MASK);
+		int base = (int) (key & bucketMask) * WAYS;
+
+		int victim = -1;
+		long victimEntry = -1;
+		for (int i = base; i < base + WAYS; i++) {
+			long current = slots.get(i);
+			if ((current & ~BOUND_MASK) == tag) {
+				if ((current & BOUND_MASK) <= (entry & BOUND_MASK)) {
+					skipped.incrementAndGet();
+					return false;
+				}
+				slots.compareAndSet(i, current, entry);
+				return true;
+			}
+			if (current == 0) {
+				if (victimEntry != 0) {
+					victim = i;
+					victimEntry = 0;
+				}
+			}
+			else if (victimEntry != 0 && (victim == -1 || (current & BOUND_MASK) > (victimEntry & BOUND_MASK))) {
+				victim = i;
+				victimEntry = current;
+			}
+		}
+		slots.compareAndSet(victim, victimEntry, entry);
+		return true;
+	}
+
+	/**
+	 * @return number of nodes skipped because an equivalent node was already expanded
+	 */
+	public long getSkipped() {
+		return skipped.get();
+	}
+
+	/**
+	 * @return number of entries the table can hold
+	 */
+	public int getCapacity() {
+		return slots.length();
+	}
+
+}
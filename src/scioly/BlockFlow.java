@@ -0,0 +1,152 @@
+package scioly;
+
+import java.util.List;
+
+import scioly.Tournament.TournamentEvent;
+
+/**
+ *
+ * BlockFlow
+ * Exact score of one scheduling block of one team in round 2. Every remaining member with events in the block chooses exactly one of
+ * them, and the score of each event only depends on how many members it ends up with, so the block is a min-cost flow from the members to
+ * the events. It is solved by successive shortest paths: members are added one at a time, each by the cheapest chain of moves that puts
+ * the new member in one of their events and moves members already placed to another of their events. Only the event at the end of a
+ * chain gains a member, so the cost of the chain is the cost of adding a member to that event. Adding one member to an event never costs
+ * less than adding the one before, so the cheapest chain for each member leads to the best choices for the whole block.
+ *
+ * A building event does not cost more with every member: it scores 1 until it is nearly full, 0 within one of its size and 1 again once
+ * overfull. Each building event is solved both ways, once paying 1 and taking any number of members, once kept within one of its size for
+ * free, and the block scores the best of those solutions.
+ *
+ * @author jason
+ *
+ */
+class BlockFlow {
+
+	/** cost of each member below the least an event must take, large enough that every chain that fills such an event comes first */
+	private static final int BIG = 1 << 20;
+	private static final int NONE = Integer.MAX_VALUE;
+
+	private BlockFlow() {
+	}
+
+	/**
+	 * @param events events in the block
+	 * @param num number of members in each event minus its size
+	 * @param options for each remaining member with events in the block, the indices into events of the events they can choose
+	 * @return lowest possible score of the block for the team
+	 */
+	static int block(List<TournamentEvent> events, int[] num, int[][] options) {
+		int[] building = new int[events.size()];
+		int buildings = 0;
+		for (int k = 0; k < events.size(); k++)
+			if (events.get(k).isBuilding())
+				building[buildings++] = k;
+
+		int[] least = new int[events.size()];
+		int[] most = new int[events.size()];
+		int best = NONE;
+		// a set bit pays 1 for the building event and lets it take any number of members; a clear bit keeps it within one of its size
+		for (int paid = 0; paid < 1 << buildings; paid++) {
+			boolean feasible = true;
+			for (int k = 0; k < events.size(); k++) {
+				least[k] = 0;
+				most[k] = NONE;
+			}
+			for (int j = 0; j < buildings; j++) {
+				int k = building[j];
+				if ((paid >> j & 1) == 0) {
+					least[k] = Math.max(0, -1 - num[k]);
+					most[k] = 1 - num[k];
+					feasible &= most[k] >= least[k];
+				}
+			}
+			if (!feasible)
+				continue;
+			int cost = solve(events, num, options, least, most);
+			if (cost != NONE)
+				best = Math.min(best, cost + Integer.bitCount(paid));
+		}
+		return best;
+	}
+
+	/**
+	 * @param least fewest members each event must take
+	 * @param most most members each event can take, or NONE
+	 * @return lowest total score of the events that are not building events, or NONE if the limits cannot be met
+	 */
+	private static int solve(List<TournamentEvent> events, int[] num, int[][] options, int[] least, int[] most) {
+		int[] count = new int[events.size()];
+		int[] assigned = new int[options.length];
+		int[] from = new int[events.size()];
+		int[] mover = new int[events.size()];
+		int[] queue = new int[events.size()];
+		for (int r = 0; r < options.length; r++) {
+			// find every event the new member can reach through a chain of moves, breadth-first
+			for (int k = 0; k < events.size(); k++)
+				mover[k] = -1;
+			int head = 0;
+			int tail = 0;
+			for (int k : options[r]) {
+				if (mover[k] == -1) {
+					mover[k] = r;
+					from[k] = -1;
+					queue[tail++] = k;
+				}
+			}
+			while (head < tail) {
+				int e = queue[head++];
+				for (int m = 0; m < r; m++) {
+					if (assigned[m] != e)
+						continue;
+					for (int k : options[m]) {
+						if (mover[k] == -1) {
+							mover[k] = m;
+							from[k] = e;
+							queue[tail++] = k;
+						}
+					}
+				}
+			}
+
+			int target = -1;
+			long cheapest = Long.MAX_VALUE;
+			for (int i = 0; i < tail; i++) {
+				int k = queue[i];
+				long marginal = marginal(events.get(k), num[k], count[k], least[k], most[k]);
+				if (marginal < cheapest) {
+					cheapest = marginal;
+					target = k;
+				}
+			}
+			if (cheapest == Long.MAX_VALUE)
+				return NONE;
+
+			// the event at the end of the chain gains a member; every other event on it trades one member for another
+			count[target]++;
+			for (int k = target; k != -1; k = from[k])
+				assigned[mover[k]] = k;
+		}
+
+		int sum = 0;
+		for (int k = 0; k < events.size(); k++) {
+			if (count[k] < least[k])
+				return NONE;
+			if (!events.get(k).isBuilding())
+				sum += LowerBound.cost(events.get(k), num[k] + count[k]);
+		}
+		return sum;
+	}
+
+	/**
+	 * @return cost of adding one more member to an event that has gained count members, or Long.MAX_VALUE if it cannot take another
+	 */
+	private static long marginal(TournamentEvent event, int num, int count, int least, int most) {
+		if (most != NONE && count >= most)
+			return Long.MAX_VALUE;
+		if (event.isBuilding())
+			return count < least ? -BIG : 0;
+		return LowerBound.cost(event, num + count + 1) - LowerBound.cost(event, num + count);
+	}
+
+}
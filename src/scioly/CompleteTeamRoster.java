@@ -8,7 +8,6 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Objects;
 
-import scioly.FullTeamRoster.EventAssignment;
 import scioly.Team.TeamMember;
 import scioly.Tournament.TournamentEvent;
 
@@ -16,7 +15,7 @@ import scioly.Tournament.TournamentEvent;
  * 
  * CompleteTeamRoster
  * Represents a complete roster, containing all person-team-event assignments required to represent the roster. A CompleteTeamRoster can
- * be generated by traversing the FullTeamRoster tree to the root.
+ * be generated from the RosterVector of a FullTeamRoster leaf.
  * 
  * @author jason
  *
@@ -27,17 +26,16 @@ public class CompleteTeamRoster {
 	private CompleteTeamRosterTeam[] teams;
 	private ArrayList<TeamMember> members;
 
-	public static CompleteTeamRoster reconstruct(TeamRosterConfiguration configuration, FullTeamRoster roster) {
+	public static CompleteTeamRoster reconstruct(TeamRosterConfiguration configuration, RosterVector roster) {
 		CompleteTeamRoster ctr = new CompleteTeamRoster(configuration);
-		FullTeamRoster current = roster;
-		while (current != null) {
-			EventAssignment assignment = current.getAssignment();
-			if (assignment != null && assignment.getTeamIndex() >= 0) {
-				ctr.assignMember(assignment.getTeamIndex(), assignment.getMember());
-				for (TournamentEvent event : assignment.getEvents())
-					ctr.assignMemberEvent(assignment.getTeamIndex(), assignment.getMember(), event);
+		for (int i = 0; i < roster.getAssigned(); i++) {
+			TeamMember member = configuration.getTeamMemberAt(i);
+			int teamIndex = roster.getTeam(member.getIndex());
+			if (teamIndex >= 0) {
+				ctr.assignMember(teamIndex, member);
+				for (TournamentEvent event : roster.getEvents(member))
+					ctr.assignMemberEvent(teamIndex, member, event);
 			}
-			current = current.getParent();
 		}
 		return ctr;
 	}
@@ -63,6 +61,39 @@ public class CompleteTeamRoster {
 		System.out.println(csv());
 	}
 
+	/**
+	 * Round 1 only branches on one of several empty teams of the same size, so the optimizer returns a single ordering of teams with equal
+	 * target sizes. This expands a roster back into every ordering of those teams.
+	 * 
+	 * @return this roster followed by every other permutation of its equal-size teams
+	 */
+	public ArrayList<CompleteTeamRoster> getPermutations() {
+		ArrayList<CompleteTeamRoster> permutations = new ArrayList<CompleteTeamRoster>();
+		permute(teams.clone(), 0, permutations);
+		return permutations;
+	}
+
+	private void permute(CompleteTeamRosterTeam[] order, int index, ArrayList<CompleteTeamRoster> permutations) {
+		if (index == order.length) {
+			CompleteTeamRoster ctr = new CompleteTeamRoster(configuration);
+			ctr.teams = order.clone();
+			ctr.members = members;
+			permutations.add(ctr);
+			return;
+		}
+		int[] sizes = configuration.getTeamSizes();
+		for (int i = index; i < order.length; i++) {
+			if (sizes[i] != sizes[index])
+				continue;
+			CompleteTeamRosterTeam t = order[index];
+			order[index] = order[i];
+			order[i] = t;
+			permute(order, index + 1, permutations);
+			order[i] = order[index];
+			order[index] = t;
+		}
+	}
+
 	/**
 	 * Outputs the roster as a csv table
 	 * @return csv representation of the roster
@@ -0,0 +1,123 @@
+package scioly;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ *
+ * Fingerprint
+ * A 128-bit hash of a complete roster that does not depend on the order of its teams: rosters that put the same members in the same events
+ * on each team have the same fingerprint however the teams are numbered, just as they are equal CompleteTeamRosters. Comparing
+ * fingerprints costs two longs instead of comparing every team's members and events.
+ *
+ * Each member on a team, and each event the member is in, has a fixed pseudorandom key, and a team's hash is the sum of its keys, so a
+ * roster that changes one member's team or event updates its team hashes by a few keys. The fingerprint sums a mix of each team's hash:
+ * summing keeps it independent of the order of the teams, and mixing keeps it from collapsing into the sum of every key, which would not
+ * tell which members share a team. Both halves are computed the same way with different seeds.
+ *
+ * @author jason
+ *
+ */
+public final class Fingerprint {
+
+	private static final long[] SEEDS = {0x2545F4914F6CDD1DL, 0x9E3779B97F4A7C15L};
+	/** event index used for a member's key of being on the team */
+	static final int MEMBER = -1;
+
+	private final long high;
+	private final long low;
+
+	public Fingerprint(long high, long low) {
+		this.high = high;
+		this.low = low;
+	}
+
+	/**
+	 * Adds a member to or removes a member from a team's hashes, with all of their events
+	 * @param hashes team hashes, two per team
+	 * @param t team index
+	 * @param member member index
+	 * @param events indices of the events the member is in
+	 * @param sign 1 to add, -1 to remove
+	 */
+	static void addMember(long[] hashes, int t, int member, int[] events, int sign) {
+		addEvent(hashes, t, member, MEMBER, sign);
+		for (int event : events)
+			addEvent(hashes, t, member, event, sign);
+	}
+
+	/**
+	 * Adds an event of a member to or removes it from a team's hashes
+	 * @param hashes team hashes, two per team
+	 * @param t team index
+	 * @param member member index
+	 * @param event event index
+	 * @param sign 1 to add, -1 to remove
+	 */
+	static void addEvent(long[] hashes, int t, int member, int event, int sign) {
+		long pair = (long) member << 32 | (event + 1) & 0xFFFFFFFFL;
+		for (int lane = 0; lane < 2; lane++)
+			hashes[2 * t + lane] += sign * mix(pair * 0xBF58476D1CE4E5B9L + SEEDS[lane]);
+	}
+
+	/**
+	 * @param hashes team hashes, two per team
+	 * @return fingerprint of the roster with those teams
+	 */
+	static Fingerprint of(long[] hashes) {
+		long high = 0;
+		long low = 0;
+		for (int t = 0; t < hashes.length / 2; t++) {
+			high += mix(hashes[2 * t] ^ SEEDS[1]);
+			low += mix(hashes[2 * t + 1] ^ SEEDS[0]);
+		}
+		return new Fingerprint(high, low);
+	}
+
+	/**
+	 * splitmix64 finalizer
+	 */
+	private static long mix(long h) {
+		h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+		h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+		return h ^ (h >>> 31);
+	}
+
+	/**
+	 * @param out
+	 * @throws IOException
+	 */
+	public void write(DataOutput out) throws IOException {
+		out.writeLong(high);
+		out.writeLong(low);
+	}
+
+	/**
+	 * @param in
+	 * @return fingerprint written by write()
+	 * @throws IOException
+	 */
+	public static Fingerprint read(DataInput in) throws IOException {
+		return new Fingerprint(in.readLong(), in.readLong());
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof Fingerprint))
+			return false;
+		Fingerprint f = (Fingerprint) o;
+		return high == f.high && low == f.low;
+	}
+
+	@Override
+	public int hashCode() {
+		return (int) (low ^ low >>> 32);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%016x%016x", high, low);
+	}
+
+}
@@ -1,14 +1,16 @@
 package scioly;
 
 import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
+import java.util.Map;
 
+import constraintOptimizer.Children;
 import constraintOptimizer.ConstraintOptimizer.BranchAndBound;
+import constraintOptimizer.Subproblem;
 import scioly.Team.TeamMember;
-import scioly.TeamRoster.TeamAssignment;
 import scioly.TeamRoster.TeamRosterTeam;
+import scioly.Tournament.TournamentBlock;
 import scioly.Tournament.TournamentEvent;
-import util.Combinations;
 
 /**
  *
@@ -18,10 +20,18 @@ import util.Combinations;
  * 
  * Since a TeamRoster assignment represents a person-team assignment combination but not a person-event assignment combination. Given a leaf TeamRoster,
  * 	we can traverse the TeamRoster tree back to the root and mimic the same person-team assignment combinations, except produces multiple branches depending
- * 	on specific event assignment combinations (but still restricted to the team specified in the corresponding TeamRoster).
+ * 	on specific event assignment combinations (but still restricted to the team specified in the corresponding TeamRoster). The leaf is read from its
+ * 	RosterVector, which lists the same assignments without keeping the TeamRoster tree alive.
  * 
  * FullTeamRoster implements branch() and lowerBound() for depth-first branch and bound optimization.
  * 
+ * An exact FullTeamRoster bounds each team's scheduling blocks with BlockFlow, which knows which events each remaining member can choose,
+ * instead of LowerBound.block(), which only counts them. Its bound is then the best score of any leaf below it, so a search only
+ * expands nodes that lead to a roster within tolerance.
+ * 
+ * A FullTeamRoster split off for one team by a TeamSplit only branches on the members of that team, and scores and bounds the other teams
+ * at their bounds at the root of the split.
+ * 
  * @author jason
  *
  */
@@ -29,11 +39,22 @@ public class FullTeamRoster implements BranchAndBound {
 
 	private TeamRosterConfiguration configuration;
 	private FullTeamRoster parent;
-	private TeamRoster roster;
+	private RosterVector roster;
+	/** position in the assignment order of the next TeamMember to be branched on, counting down to -1 */
+	private int index;
 
 	private TeamRosterTeam[] teams;
-	private byte[] eventNumberRemaining;
-	private byte[] lowerBounds;
+	private byte[] eventRemaining;
+	private byte[] blockRemaining;
+	private short[] lowerBounds;
+	/** hashes of the members placed so far on each team, two per team; see Fingerprint */
+	private long[] hashes;
+	/** the team this node branches on, or null if it branches on every team */
+	private TeamSplit.TeamPart part;
+	/** whether scheduling blocks are bounded exactly by BlockFlow */
+	private boolean exact;
+	private int lowerBound;
+	private boolean bounded;
 
 	private EventAssignment assignment;
 
@@ -43,13 +64,11 @@ public class FullTeamRoster implements BranchAndBound {
 	 * @param roster
 	 * @return a basic FullTeamRoster
 	 */
-	public static FullTeamRoster reconstruct(TeamRosterConfiguration configuration, TeamRoster roster) {
+	public static FullTeamRoster reconstruct(TeamRosterConfiguration configuration, RosterVector roster) {
 		FullTeamRoster fullRoster = initFullTeamRoster(configuration, roster);
-		TeamRoster tr = roster;
-		while (tr.getAssignment() != null) {
-			if (tr.getAssignment().getTeamIndex() >= 0)
-				fullRoster.assignMember(tr.getAssignment().getTeamIndex(), tr.getAssignment().getMember());
-			tr = tr.getParent();
+		for (int i = roster.getAssigned() - 1; i >= 0; i--) {
+			TeamMember member = configuration.getTeamMemberAt(i);
+			fullRoster.assignMember(roster.getTeam(member.getIndex()), member);
 		}
 		return fullRoster;
 	}
@@ -58,59 +77,157 @@ public class FullTeamRoster implements BranchAndBound {
 	 * Generate a partial FullTeamRoster from a TeamRoster. Branching the partial FullTeamRoster produces children rosters assigned in the reverse order of
 	 * the TeamRoster (i.e. by traversing down the FullTeamRoster tree, you traverse up the TeamRoster tree back toward the root).
 	 * @param configuration
-	 * @param roster
+	 * @param roster round 1 leaf
+	 * @return a partial FullTeamRoster
+	 */
+	public static FullTeamRoster initFullTeamRoster(TeamRosterConfiguration configuration, RosterVector roster) {
+		return initFullTeamRoster(configuration, roster, false);
+	}
+
+	/**
+	 * @param configuration
+	 * @param roster round 1 leaf
+	 * @param exact whether scheduling blocks are bounded exactly by BlockFlow
 	 * @return a partial FullTeamRoster
 	 */
-	public static FullTeamRoster initFullTeamRoster(TeamRosterConfiguration configuration, TeamRoster roster) {
+	public static FullTeamRoster initFullTeamRoster(TeamRosterConfiguration configuration, RosterVector roster, boolean exact) {
 		TeamRosterTeam[] teams = new TeamRosterTeam[configuration.getTeamSizes().length];
 		for (int i = 0; i < teams.length; i++){
 			teams[i] = new TeamRosterTeam(configuration, configuration.getTeamSizes()[i]);
 		}
-		byte[] remaining = new byte[configuration.getTournament().getEvents().size()];
-		for (TeamMember member : configuration.getTeam().getTeamMembers()) {
-			for (TournamentEvent event : member.getEvents()) {
-				remaining[event.getIndex()]++;
-			}
+		int events = configuration.getTournament().getEvents().size();
+		int blocks = configuration.getTournament().getBlocks().size();
+		FullTeamRoster root = new FullTeamRoster(null, configuration, roster, roster.getAssigned() - 1, teams, new byte[teams.length * events], new byte[teams.length * blocks], new short[teams.length * blocks], new long[2 * teams.length]);
+		root.exact = exact;
+		for (int i = 0; i < roster.getAssigned(); i++) {
+			TeamMember member = configuration.getTeamMemberAt(i);
+			if (roster.getTeam(member.getIndex()) >= 0)
+				root.countMember(roster.getTeam(member.getIndex()), member, 1);
 		}
-		return new FullTeamRoster(null, configuration, roster, teams, remaining, new byte[configuration.getTournament().getEvents().size()]);
+		for (int i = 0; i < teams.length; i++)
+			for (TournamentBlock block : configuration.getTournament().getBlocks())
+				root.updateBound(i, block);
+		return root;
 	}
 
-	public FullTeamRoster(FullTeamRoster parent, TeamRosterConfiguration configuration, TeamRoster roster, TeamRosterTeam[] teams, byte[] eventNumberRemaining, byte[] lowerBounds) {
+	/**
+	 * @param parent
+	 * @param configuration
+	 * @param roster round 1 leaf
+	 * @param index position in the assignment order of the next TeamMember to be branched on
+	 * @param teams
+	 * @param eventRemaining array representing, for each team and event, the number of remaining TeamMembers on the team who could be in the event
+	 * @param blockRemaining array representing, for each team and scheduling block, the number of remaining TeamMembers on the team with events in the block
+	 * @param lowerBounds array representing current lower bound for each team and scheduling block
+	 * @param hashes array representing the fingerprint hashes of each team
+	 */
+	public FullTeamRoster(FullTeamRoster parent, TeamRosterConfiguration configuration, RosterVector roster, int index, TeamRosterTeam[] teams, byte[] eventRemaining, byte[] blockRemaining, short[] lowerBounds, long[] hashes) {
 		this.parent = parent;
 		this.configuration = configuration;
 		this.teams = teams;
-		this.eventNumberRemaining = eventNumberRemaining;
+		this.eventRemaining = eventRemaining;
+		this.blockRemaining = blockRemaining;
 		this.lowerBounds = lowerBounds;
+		this.hashes = hashes;
 		this.roster = roster;
+		this.index = index;
 	}
 
 	public EventAssignment getAssignment() {
 		return assignment;
 	}
 
+	/**
+	 * @param part
+	 * @return a copy of this root that only branches on the members of the part's team
+	 */
+	FullTeamRoster split(TeamSplit.TeamPart part) {
+		FullTeamRoster copy = copy(null, index);
+		copy.part = part;
+		copy.index = copy.skip(index);
+		return copy;
+	}
+
+	/**
+	 * @param index position in the assignment order
+	 * @return the position at or before index of the next TeamMember to branch on, or -1 if there is none
+	 */
+	private int skip(int index) {
+		if (part != null)
+			while (index >= 0 && roster.getTeam(configuration.getTeamMemberAt(index).getIndex()) != part.getTeam())
+				index--;
+		return index;
+	}
+
+	/**
+	 * @param teamIndex
+	 * @return lower bound of the team alone
+	 */
+	int teamBound(int teamIndex) {
+		int blocks = configuration.getTournament().getBlocks().size();
+		int sum = 0;
+		for (int b = 0; b < blocks; b++)
+			sum += lowerBounds[teamIndex * blocks + b];
+		return sum;
+	}
+
+	/**
+	 * @param teamIndex
+	 * @param lane 0 or 1
+	 * @return one of the team's two Fingerprint hashes
+	 */
+	long getHash(int teamIndex, int lane) {
+		return hashes[2 * teamIndex + lane];
+	}
+
 	private void assignMember(int teamIndex, TeamMember member) {
-		if (teamIndex >= 0)
+		if (teamIndex >= 0) {
 			teams[teamIndex].assignMember(member);
-		for (TournamentEvent event : member.getEvents())
-			eventNumberRemaining[event.getIndex()]--;
+			countMember(teamIndex, member, -1);
+		}
+	}
+
+	/**
+	 * Adds or removes a TeamMember from the remaining members of a team
+	 * @param teamIndex
+	 * @param member
+	 * @param change 1 to add, -1 to remove
+	 */
+	private void countMember(int teamIndex, TeamMember member, int change) {
+		int events = configuration.getTournament().getEvents().size();
+		int blocks = configuration.getTournament().getBlocks().size();
+		for (TournamentEvent event : configuration.getSignups(member))
+			eventRemaining[teamIndex * events + event.getIndex()] += change;
+		for (Map.Entry<TournamentBlock, ArrayList<TournamentEvent>> conflict : configuration.getConflicts(member).entrySet()) {
+			blockRemaining[teamIndex * blocks + conflict.getKey().getIndex()] += change;
+			for (TournamentEvent event : conflict.getValue())
+				eventRemaining[teamIndex * events + event.getIndex()] += change;
+		}
 	}
 
-	private void assignMemberEvents(int teamIndex, TeamMember member, List<TournamentEvent> events) {
+	/**
+	 * @param teamIndex
+	 * @param member
+	 * @param choice number of the way the member's conflicting events are chosen; see TeamRosterConfiguration.getChoiceEvents()
+	 */
+	private void assignMemberEvents(int teamIndex, TeamMember member, int choice) {
 		if (teamIndex >= 0) {
-			for (TournamentEvent event : events)
-				teams[teamIndex].assignMemberEvent(member, event);
+			int[] events = configuration.getChoiceEvents(member, choice);
+			for (int event : events)
+				teams[teamIndex].assignMemberEvent(event);
+			Fingerprint.addMember(hashes, teamIndex, member.getIndex(), events, 1);
 		}
-		this.assignment = new EventAssignment(member, teamIndex, events);
+		this.assignment = new EventAssignment(member, teamIndex, choice);
 	}
 
 	/**
-	 * A FullTeamRoster is complete when its corresponding TeamRoster is the root (i.e. has no parent)
+	 * A FullTeamRoster is complete when every TeamMember assigned by the TeamRoster has been branched on
 	 * 
 	 * @return if FullTeamRoster is complete
 	 */
 	@Override
 	public boolean isComplete() {
-		return roster.getParent() == null;
+		return index < 0;
 	}
 
 	@Override
@@ -120,6 +237,8 @@ public class FullTeamRoster implements BranchAndBound {
 
 	@Override
 	public int score() {
+		if (part != null)
+			return teams[part.getTeam()].score() + part.getOffset();
 		int sum = 0;
 		for (TeamRosterTeam team : teams) {
 			sum += team.score();
@@ -130,75 +249,218 @@ public class FullTeamRoster implements BranchAndBound {
 	@Override
 	public ArrayList<BranchAndBound> branch() {
 		ArrayList<BranchAndBound> branches = new ArrayList<BranchAndBound>();
-		TeamAssignment ra = roster.getAssignment();
-		if (ra != null) {
-			TeamMember person = ra.getMember();
-			int teamIndex = ra.getTeamIndex();
-			List<List<TournamentEvent>> personPossibilities = Combinations.getCombinations(new ArrayList<List<TournamentEvent>>(configuration.getConflicts(person).values()));
-			for (List<TournamentEvent> combination : personPossibilities) {
-				FullTeamRoster tr = this.copy(this, roster.getParent());
-				tr.assignMember(teamIndex, person);
-				combination.addAll(configuration.getSignups(person));
-				tr.assignMemberEvents(teamIndex, person, combination);
-				branches.add(tr);
-			}
-		} else {
-			FullTeamRoster ftr = this.copy(this, roster.getParent());
-			branches.add(ftr);
-		}
+		for (int choice = 0; choice < childCount(); choice++)
+			branches.add(child(choice));
 		return branches;
 	}
 
+	/**
+	 * The bound of each child is found on this node, by assigning the next TeamMember's events of the child's choice, bounding the blocks
+	 * they change and taking the assignment back. A child is only copied from this node once it is taken with get().
+	 */
+	@Override
+	public Children children() {
+		return new FullTeamRosterChildren();
+	}
+
+	/**
+	 * @return number of children of the node
+	 */
+	private int childCount() {
+		if (index < 0)
+			return 1;
+		TeamMember person = configuration.getTeamMemberAt(index);
+		// a member off the teams has no events to choose, so every combination would lead to the same rosters
+		if (roster.getTeam(person.getIndex()) < 0)
+			return 1;
+		return configuration.getChoiceCount(person);
+	}
+
+	/**
+	 * @param choice number of the way the next TeamMember's conflicting events are chosen
+	 * @return the child of the node for the choice
+	 */
+	private FullTeamRoster child(int choice) {
+		if (index < 0)
+			return this.copy(this, index);
+		TeamMember person = configuration.getTeamMemberAt(index);
+		int teamIndex = roster.getTeam(person.getIndex());
+		FullTeamRoster tr = this.copy(this, skip(index - 1));
+		tr.assignMember(teamIndex, person);
+		tr.assignMemberEvents(teamIndex, person, choice);
+		return tr;
+	}
+
+	/**
+	 * @param choice number of the way the next TeamMember's conflicting events are chosen
+	 * @return lower bound of the child of the node for the choice, found without building the child
+	 */
+	private int childBound(int choice) {
+		int bound = lowerBound();
+		if (index < 0)
+			return bound;
+		TeamMember person = configuration.getTeamMemberAt(index);
+		int teamIndex = roster.getTeam(person.getIndex());
+		if (teamIndex < 0)
+			return bound;
+		int[] events = configuration.getChoiceEvents(person, choice);
+		int blocks = configuration.getTournament().getBlocks().size();
+		countMember(teamIndex, person, -1);
+		for (int event : events)
+			teams[teamIndex].assignMemberEvent(event);
+		// the person is no longer remaining in the child, which matters to the options of an exact bound
+		index--;
+		for (TournamentBlock block : configuration.getConflicts(person).keySet())
+			bound += blockBound(teamIndex, block) - lowerBounds[teamIndex * blocks + block.getIndex()];
+		if (!configuration.getSignups(person).isEmpty()) {
+			TournamentBlock block = configuration.getSignups(person).get(0).getBlock();
+			bound += blockBound(teamIndex, block) - lowerBounds[teamIndex * blocks + block.getIndex()];
+		}
+		index++;
+		for (int event : events)
+			teams[teamIndex].removeMemberEvent(event);
+		countMember(teamIndex, person, 1);
+		return bound;
+	}
+
+	/**
+	 * Children of a FullTeamRoster in the order of branch()
+	 */
+	private class FullTeamRosterChildren implements Children {
+
+		private final int count = childCount();
+		private int choice = -1;
+
+		@Override
+		public boolean next() {
+			return ++choice < count;
+		}
+
+		@Override
+		public int lowerBound() {
+			return childBound(choice);
+		}
+
+		@Override
+		public BranchAndBound get() {
+			return child(choice);
+		}
+
+	}
+
+	/**
+	 * The team of every remaining TeamMember is already fixed by the TeamRoster, so each team and scheduling block is bounded separately:
+	 * signup events get all of the team's remaining members signed up for them, and in every other block each remaining member fills
+	 * exactly one of their events. Only the blocks of the newest assignment can change, so the total is kept on the node and updated by
+	 * the change in those blocks' bounds.
+	 */
 	@Override
 	public int lowerBound() {
-		if (assignment != null) {
-			for (TournamentEvent event : assignment.getEvents()) {
-				int[] num = new int[teams.length];
-				for (int i = 0; i < teams.length; i++) {
-					num[i] = teams[i].getEventNumber(event.getIndex()) - event.getSize();
-				}
-				int left = eventNumberRemaining[event.getIndex()];
-				while (left > 0) {
-					int minIndex = 0;
-					for (int i = 0; i < teams.length; i++)
-						if (num[i] < num[minIndex])
-							minIndex = i;
-					if (num[minIndex] < 0)
-						num[minIndex]++;
-					else break;
-					left--;
-				}
-				byte sum = 0;
-				for (int i = 0; i < teams.length; i++) {
-					if (event.isBuilding()) {
-						if (Math.abs(num[i]) >= 2)
-							sum++;
-					}
-					else
-						sum += num[i] * num[i];
-				}
-				lowerBounds[event.getIndex()] = sum;
-			}
+		if (assignment != null && !bounded && assignment.getTeamIndex() >= 0) {
+			TeamMember member = assignment.getMember();
+			for (TournamentBlock block : configuration.getConflicts(member).keySet())
+				updateBound(assignment.getTeamIndex(), block);
+			if (!configuration.getSignups(member).isEmpty())
+				updateBound(assignment.getTeamIndex(), configuration.getSignups(member).get(0).getBlock());
 		}
-		int sum = 0;
-		for (TournamentEvent event : configuration.getTournament().getEvents()) {
-			sum += lowerBounds[event.getIndex()];
+		bounded = true;
+		return lowerBound;
+	}
+
+	private void updateBound(int teamIndex, TournamentBlock block) {
+		int index = teamIndex * configuration.getTournament().getBlocks().size() + block.getIndex();
+		short sum = blockBound(teamIndex, block);
+		lowerBound += sum - lowerBounds[index];
+		lowerBounds[index] = sum;
+	}
+
+	/**
+	 * @param teamIndex
+	 * @param block
+	 * @return lowest possible score of the events in the block for the team
+	 */
+	private short blockBound(int teamIndex, TournamentBlock block) {
+		int events = configuration.getTournament().getEvents().size();
+		ArrayList<TournamentEvent> blockEvents = block.getEvents();
+		int[] num = new int[blockEvents.size()];
+		int[] remaining = new int[blockEvents.size()];
+		for (int k = 0; k < num.length; k++) {
+			TournamentEvent event = blockEvents.get(k);
+			num[k] = teams[teamIndex].getEventNumber(event.getIndex()) - event.getSize();
+			remaining[k] = eventRemaining[teamIndex * events + event.getIndex()];
 		}
-		return sum;
+		if (block.getTimeslot() == -1) {
+			int sum = 0;
+			for (int k = 0; k < num.length; k++)
+				sum += LowerBound.cost(blockEvents.get(k), num[k] + remaining[k]);
+			return (short) sum;
+		}
+		if (exact)
+			return (short) BlockFlow.block(blockEvents, num, options(teamIndex, block));
+		int members = blockRemaining[teamIndex * configuration.getTournament().getBlocks().size() + block.getIndex()];
+		return (short) LowerBound.block(blockEvents, num, remaining, members);
+	}
+
+	/**
+	 * @param teamIndex
+	 * @param block
+	 * @return for each remaining TeamMember of the team with events in the block, the indices of those events among the block's events
+	 */
+	private int[][] options(int teamIndex, TournamentBlock block) {
+		ArrayList<int[]> options = new ArrayList<int[]>();
+		for (int i = index; i >= 0; i--) {
+			TeamMember member = configuration.getTeamMemberAt(i);
+			if (roster.getTeam(member.getIndex()) != teamIndex)
+				continue;
+			ArrayList<TournamentEvent> events = configuration.getConflicts(member).get(block);
+			if (events == null)
+				continue;
+			int[] choice = new int[events.size()];
+			for (int k = 0; k < choice.length; k++)
+				choice[k] = block.getEvents().indexOf(events.get(k));
+			options.add(choice);
+		}
+		return options.toArray(new int[options.size()][]);
 	}
 
 	/**
-	 * Create a copy of the FullTeamRoster, except with the given TeamRoster. Use this method to create a child node in the FullTeamRoster tree.
+	 * Create a copy of the FullTeamRoster, except with the given next TeamMember. Use this method to create a child node in the FullTeamRoster tree.
 	 * 
-	 * @param roster
+	 * @param index
 	 * @return a copy of FullTeamRoster
 	 */
-	public FullTeamRoster copy(FullTeamRoster parent, TeamRoster roster) {
+	public FullTeamRoster copy(FullTeamRoster parent, int index) {
 		TeamRosterTeam[] teamsCopy = new TeamRosterTeam[teams.length];
 		for (int i = 0; i < teams.length; i++) {
 			teamsCopy[i] = teams[i].copy();
 		}
-		return new FullTeamRoster(parent, configuration, roster, teamsCopy, eventNumberRemaining.clone(), lowerBounds.clone());
+		FullTeamRoster copy = new FullTeamRoster(parent, configuration, roster, index, teamsCopy, eventRemaining.clone(), blockRemaining.clone(), lowerBounds.clone(), hashes.clone());
+		copy.lowerBound = lowerBound;
+		copy.part = part;
+		copy.exact = exact;
+		return copy;
+	}
+
+	@Override
+	public Subproblem subproblem() {
+		return part;
+	}
+
+	/**
+	 * Walks up to the root once to record the event each TeamMember chose in each block
+	 */
+	@Override
+	public RosterVector compact() {
+		byte[] teams = new byte[configuration.getTeam().getTeamMembers().size()];
+		byte[] choices = new byte[configuration.getTotalChoices()];
+		Arrays.fill(teams, (byte) -1);
+		for (FullTeamRoster current = this; current.assignment != null; current = current.parent) {
+			TeamMember member = current.assignment.getMember();
+			teams[member.getIndex()] = (byte) current.assignment.getTeamIndex();
+			byte[] indices = configuration.getChoiceIndices(member, current.assignment.getChoice());
+			System.arraycopy(indices, 0, choices, configuration.getChoiceOffset(member), indices.length);
+		}
+		return new RosterVector(configuration, teams, roster.getAssigned(), choices, score(), Fingerprint.of(hashes));
 	}
 
 	public void print() {
@@ -211,12 +473,17 @@ public class FullTeamRoster implements BranchAndBound {
 
 		private TeamMember member;
 		private int teamIndex;
-		private List<TournamentEvent> events;
+		private int choice;
 
-		public EventAssignment(TeamMember member, int teamIndex, List<TournamentEvent> events) {
+		/**
+		 * @param member
+		 * @param teamIndex
+		 * @param choice number of the way the member's conflicting events are chosen; see TeamRosterConfiguration.getChoiceEvents()
+		 */
+		public EventAssignment(TeamMember member, int teamIndex, int choice) {
 			this.member = member;
 			this.teamIndex = teamIndex;
-			this.events = events;
+			this.choice = choice;
 		}
 
 		public TeamMember getMember() {
@@ -227,8 +494,8 @@ public class FullTeamRoster implements BranchAndBound {
 			return teamIndex;
 		}
 
-		public List<TournamentEvent> getEvents() {
-			return events;
+		public int getChoice() {
+			return choice;
 		}
 
 	}
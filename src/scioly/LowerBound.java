@@ -0,0 +1,133 @@
+package scioly;
+
+import java.util.Arrays;
+import java.util.List;
+
+import scioly.Tournament.TournamentEvent;
+
+/**
+ *
+ * LowerBound
+ * Relaxations of the roster score used by TeamRoster and FullTeamRoster to bound a partial roster. Each method solves a small part of the
+ * problem exactly after dropping the constraints that tie it to the rest of the roster, so the sum of the parts never exceeds the score of
+ * any roster below the partial roster.
+ *
+ * @author jason
+ *
+ */
+class LowerBound {
+
+	private LowerBound() {
+	}
+
+	/**
+	 * Score of one event on one team
+	 * @param event
+	 * @param delta number of members in the event minus its size
+	 * @return
+	 */
+	static int cost(TournamentEvent event, int delta) {
+		if (event.isBuilding())
+			return Math.abs(delta) >= 2 ? 1 : 0;
+		return delta * delta;
+	}
+
+	/**
+	 * Bound for a single event in round 1. Up to left unassigned members signed up for the event can still be added, and at most room[i] of
+	 * them to team i, where left is already limited by the number of open spots on all teams. Which members those are is ignored, so each
+	 * event is bounded on its own.
+	 *
+	 * @param event
+	 * @param num number of members in the event minus its size, per team; modified
+	 * @param room number of open spots per team; modified
+	 * @param left number of members that can still be added to the event
+	 * @return lowest possible score of the event over all teams
+	 */
+	static int event(TournamentEvent event, int[] num, int[] room, int left) {
+		int sum = 0;
+		if (event.isBuilding()) {
+			// a building event scores 1 per team that is off by 2 or more, so fix the teams needing the fewest members first
+			int[] need = new int[num.length];
+			int fixable = 0;
+			for (int i = 0; i < num.length; i++) {
+				if (num[i] >= 2)
+					sum++;
+				else if (num[i] <= -2) {
+					if (-num[i] - 1 <= room[i])
+						need[fixable++] = -num[i] - 1;
+					else
+						sum++;
+				}
+			}
+			Arrays.sort(need, 0, fixable);
+			for (int i = 0; i < fixable; i++) {
+				if (need[i] <= left)
+					left -= need[i];
+				else
+					sum++;
+			}
+			return sum;
+		}
+
+		// a squared deviation shrinks most by adding a member to the team furthest below the event size
+		while (left > 0) {
+			int minIndex = -1;
+			for (int i = 0; i < num.length; i++)
+				if (num[i] < 0 && room[i] > 0 && (minIndex == -1 || num[i] < num[minIndex]))
+					minIndex = i;
+			if (minIndex == -1)
+				break;
+			num[minIndex]++;
+			room[minIndex]--;
+			left--;
+		}
+		for (int i = 0; i < num.length; i++)
+			sum += num[i] * num[i];
+		return sum;
+	}
+
+	/**
+	 * Bound for one scheduling block of one team in round 2, where the team of every remaining member is known. Each of the members members
+	 * with events in the block is added to exactly one of them; remaining[k] of them can choose the k-th event. Which member makes which choice is
+	 * ignored. A building event only counts its best case and can take any of the members that could choose it, so only the other events
+	 * have to be solved exactly.
+	 *
+	 * @param events events in the block
+	 * @param num number of members in each event minus its size; modified
+	 * @param remaining number of remaining members who could choose each event
+	 * @param members number of remaining members with events in the block
+	 * @return lowest possible score of the block for the team
+	 */
+	static int block(List<TournamentEvent> events, int[] num, int[] remaining, int members) {
+		int sum = 0;
+		int absorbed = 0;
+		for (int k = 0; k < events.size(); k++) {
+			if (events.get(k).isBuilding()) {
+				int best = cost(events.get(k), num[k]);
+				for (int x = 1; x <= remaining[k] && best > 0; x++)
+					best = Math.min(best, cost(events.get(k), num[k] + x));
+				sum += best;
+				absorbed += remaining[k];
+			}
+		}
+
+		// members who cannot all go to building events are forced onto the others, and more are added while that lowers the score
+		int forced = members - absorbed;
+		int[] added = new int[events.size()];
+		for (int unit = 0; unit < members; unit++) {
+			int minIndex = -1;
+			for (int k = 0; k < events.size(); k++)
+				if (!events.get(k).isBuilding() && added[k] < remaining[k] && (minIndex == -1 || num[k] < num[minIndex]))
+					minIndex = k;
+			if (minIndex == -1 || (unit >= forced && num[minIndex] >= 0))
+				break;
+			num[minIndex]++;
+			added[minIndex]++;
+		}
+		for (int k = 0; k < events.size(); k++)
+			if (!events.get(k).isBuilding())
+				sum += num[k] * num[k];
+		return sum;
+	}
+
+}
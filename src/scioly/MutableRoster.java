@@ -0,0 +1,479 @@
+package scioly;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+
+import constraintOptimizer.ConstraintOptimizer.BranchAndBound;
+import scioly.FullTeamRoster.EventAssignment;
+import scioly.Team.TeamMember;
+import scioly.Tournament.TournamentEvent;
+
+/**
+ *
+ * MutableRoster
+ * A complete roster that is changed in place: every TeamMember is on a team or on none, and has one chosen event in each scheduling block
+ * they have events in. Two scores are kept up to date as members are moved, so a change costs time proportional to the events of the
+ * members it touches rather than the size of the roster:
+ *  - basic score: counts every event a member signed up for, the score of a TeamRoster (round 1)
+ *  - full score: counts only the chosen events and the signup events, the score of a FullTeamRoster (round 2)
+ *
+ * Moves can leave the roster in a state that breaks team sizes or stacking rules; isValid() checks a member after it has been moved.
+ *
+ * @author jason
+ *
+ */
+public class MutableRoster {
+
+	private final TeamRosterConfiguration configuration;
+	private final TeamMember[] members;
+	/** options[m][k] are the events member m can choose between in their k-th scheduling block */
+	private final TournamentEvent[][][] options;
+	private final TournamentEvent[][] signups;
+
+	private final int[] team;
+	private final int[][] choice;
+	private final int[] teamSize;
+	private final int[][] basicCount;
+	private final int[][] fullCount;
+	private int basicScore;
+	private int fullScore;
+	/** team hashes of the Fingerprint, two per team */
+	private final long[] hashes;
+
+	/**
+	 * Creates a roster with every TeamMember off the teams, choosing the first event in each of their blocks
+	 * @param configuration
+	 */
+	public MutableRoster(TeamRosterConfiguration configuration) {
+		this.configuration = configuration;
+		int n = configuration.getTeam().getTeamMembers().size();
+		members = new TeamMember[n];
+		options = new TournamentEvent[n][][];
+		signups = new TournamentEvent[n][];
+		for (TeamMember member : configuration.getTeam().getTeamMembers()) {
+			int m = member.getIndex();
+			members[m] = member;
+			ArrayList<ArrayList<TournamentEvent>> blocks = new ArrayList<ArrayList<TournamentEvent>>(configuration.getConflicts(member).values());
+			options[m] = new TournamentEvent[blocks.size()][];
+			for (int k = 0; k < blocks.size(); k++)
+				options[m][k] = blocks.get(k).toArray(new TournamentEvent[0]);
+			signups[m] = configuration.getSignups(member).toArray(new TournamentEvent[0]);
+		}
+
+		team = new int[n];
+		choice = new int[n][];
+		for (int m = 0; m < n; m++) {
+			team[m] = -1;
+			choice[m] = new int[options[m].length];
+		}
+		int teams = configuration.getTeamSizes().length;
+		int events = configuration.getTournament().getEvents().size();
+		teamSize = new int[teams];
+		basicCount = new int[teams][events];
+		fullCount = new int[teams][events];
+		hashes = new long[2 * teams];
+		for (int t = 0; t < teams; t++) {
+			for (TournamentEvent event : configuration.getTournament().getEvents()) {
+				basicScore += LowerBound.cost(event, -event.getSize());
+				fullScore += LowerBound.cost(event, -event.getSize());
+			}
+		}
+	}
+
+	/**
+	 * Builds a roster by repeatedly placing the unassigned TeamMember on the team where they lower the basic score the most, until the
+	 * teams are full or everyone is placed. Members named in stacking rules are placed first, since they must be on a team.
+	 *
+	 * @param configuration
+	 * @return the roster, or null if the greedy placement could not satisfy the stacking and unstacking rules
+	 */
+	public static MutableRoster greedy(TeamRosterConfiguration configuration) {
+		MutableRoster roster = new MutableRoster(configuration);
+		int n = roster.members.length;
+		int target = Math.min(n, configuration.getTotalTeamSize());
+		for (int placed = 0; placed < target; placed++) {
+			boolean required = false;
+			for (int m = 0; m < n; m++)
+				if (roster.team[m] == -1 && roster.isStacked(m))
+					required = true;
+
+			int bestMember = -1;
+			int bestTeam = -1;
+			int bestScore = Integer.MAX_VALUE;
+			for (int m = 0; m < n; m++) {
+				if (roster.team[m] != -1 || (required && !roster.isStacked(m)))
+					continue;
+				for (int t = 0; t < roster.teamSize.length; t++) {
+					roster.move(m, t);
+					// leave room for stacked members who have to follow onto the same team
+					boolean room = roster.teamSize[t] + roster.unplacedPartners(m) <= configuration.getTeamSizes()[t];
+					if (room && roster.isValid(m) && roster.basicScore < bestScore) {
+						bestMember = m;
+						bestTeam = t;
+						bestScore = roster.basicScore;
+					}
+					roster.move(m, -1);
+				}
+			}
+			if (bestMember == -1)
+				return null;
+			roster.move(bestMember, bestTeam);
+		}
+		for (int m = 0; m < n; m++)
+			if (roster.team[m] == -1 && roster.isStacked(m))
+				return null;
+		return roster;
+	}
+
+	/**
+	 * Lowers the basic score by moving single TeamMembers to teams with open spots and swapping pairs of TeamMembers (including members
+	 * off the teams) until no such change helps
+	 */
+	public void improveTeams() {
+		boolean improved = true;
+		while (improved) {
+			improved = false;
+			for (int a = 0; a < members.length; a++) {
+				if (team[a] >= 0) {
+					for (int t = 0; t < teamSize.length; t++) {
+						int from = team[a];
+						if (t == from)
+							continue;
+						int before = basicScore;
+						move(a, t);
+						if (basicScore < before && isValid(a))
+							improved = true;
+						else
+							move(a, from);
+					}
+				}
+				for (int b = a + 1; b < members.length; b++) {
+					if (team[a] == team[b])
+						continue;
+					int before = basicScore;
+					swap(a, b);
+					if (basicScore < before && isValid(a) && isValid(b))
+						improved = true;
+					else
+						swap(a, b);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Lowers the full score by switching the chosen event of single TeamMembers in single blocks until no such change helps
+	 */
+	public void improveChoices() {
+		boolean improved = true;
+		while (improved) {
+			improved = false;
+			for (int m = 0; m < members.length; m++) {
+				if (team[m] < 0)
+					continue;
+				for (int k = 0; k < options[m].length; k++) {
+					for (int c = 0; c < options[m][k].length; c++) {
+						int from = choice[m][k];
+						if (c == from)
+							continue;
+						int before = fullScore;
+						choose(m, k, c);
+						if (fullScore < before)
+							improved = true;
+						else
+							choose(m, k, from);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Moves a TeamMember to a team
+	 * @param m member index
+	 * @param t team index, or -1 to take the member off the teams
+	 */
+	public void move(int m, int t) {
+		if (team[m] >= 0)
+			count(m, team[m], -1);
+		team[m] = t;
+		if (t >= 0)
+			count(m, t, 1);
+	}
+
+	/**
+	 * Exchanges the teams of two TeamMembers
+	 * @param a member index
+	 * @param b member index
+	 */
+	public void swap(int a, int b) {
+		int t = team[a];
+		move(a, team[b]);
+		move(b, t);
+	}
+
+	/**
+	 * Chooses the event a TeamMember is in for one of their scheduling blocks
+	 * @param m member index
+	 * @param k index of the block among the member's blocks
+	 * @param c index of the event among the block's events
+	 */
+	public void choose(int m, int k, int c) {
+		if (team[m] >= 0) {
+			fullScore += change(fullCount[team[m]], options[m][k][choice[m][k]], -1);
+			fullScore += change(fullCount[team[m]], options[m][k][c], 1);
+			Fingerprint.addEvent(hashes, team[m], m, options[m][k][choice[m][k]].getIndex(), -1);
+			Fingerprint.addEvent(hashes, team[m], m, options[m][k][c].getIndex(), 1);
+		}
+		choice[m][k] = c;
+	}
+
+	private void count(int m, int t, int change) {
+		teamSize[t] += change;
+		for (TournamentEvent event : members[m].getEvents())
+			basicScore += change(basicCount[t], event, change);
+		Fingerprint.addEvent(hashes, t, m, Fingerprint.MEMBER, change);
+		for (TournamentEvent event : signups[m]) {
+			fullScore += change(fullCount[t], event, change);
+			Fingerprint.addEvent(hashes, t, m, event.getIndex(), change);
+		}
+		for (int k = 0; k < options[m].length; k++) {
+			fullScore += change(fullCount[t], options[m][k][choice[m][k]], change);
+			Fingerprint.addEvent(hashes, t, m, options[m][k][choice[m][k]].getIndex(), change);
+		}
+	}
+
+	/**
+	 * @return change in score from adding change members to an event
+	 */
+	private static int change(int[] count, TournamentEvent event, int change) {
+		int before = LowerBound.cost(event, count[event.getIndex()] - event.getSize());
+		count[event.getIndex()] += change;
+		return LowerBound.cost(event, count[event.getIndex()] - event.getSize()) - before;
+	}
+
+	/**
+	 * @param m member index
+	 * @return if the member's team is not over its size and the member's stacking and unstacking rules hold, where members named in
+	 * stacking rules have to be on a team
+	 */
+	public boolean isValid(int m) {
+		int t = team[m];
+		if (t >= 0 && teamSize[t] > configuration.getTeamSizes()[t])
+			return false;
+		for (TeamMember[] pair : configuration.getStacks()) {
+			int other = partner(pair, m);
+			if (other != -1 && (t == -1 || (team[other] != -1 && team[other] != t)))
+				return false;
+		}
+		for (TeamMember[] pair : configuration.getUnstacks()) {
+			int other = partner(pair, m);
+			if (other != -1 && t != -1 && team[other] == t)
+				return false;
+		}
+		return true;
+	}
+
+	private boolean isStacked(int m) {
+		for (TeamMember[] pair : configuration.getStacks())
+			if (partner(pair, m) != -1)
+				return true;
+		return false;
+	}
+
+	private int unplacedPartners(int m) {
+		int count = 0;
+		for (TeamMember[] pair : configuration.getStacks()) {
+			int other = partner(pair, m);
+			if (other != -1 && team[other] == -1)
+				count++;
+		}
+		return count;
+	}
+
+	private static int partner(TeamMember[] pair, int m) {
+		if (pair[0].getIndex() == m)
+			return pair[1].getIndex();
+		if (pair[1].getIndex() == m)
+			return pair[0].getIndex();
+		return -1;
+	}
+
+	public int getBasicScore() {
+		return basicScore;
+	}
+
+	public int getFullScore() {
+		return fullScore;
+	}
+
+	/**
+	 * @return number of TeamMembers
+	 */
+	public int size() {
+		return members.length;
+	}
+
+	/**
+	 * @return number of teams
+	 */
+	public int getTeams() {
+		return teamSize.length;
+	}
+
+	/**
+	 * @param m member index
+	 * @return team index of the member, or -1 if the member is not on a team
+	 */
+	public int getTeam(int m) {
+		return team[m];
+	}
+
+	/**
+	 * @param t team index
+	 * @return if the team has fewer members than its size
+	 */
+	public boolean hasRoom(int t) {
+		return teamSize[t] < configuration.getTeamSizes()[t];
+	}
+
+	/**
+	 * @param m member index
+	 * @return number of scheduling blocks the member has events in
+	 */
+	public int getBlocks(int m) {
+		return options[m].length;
+	}
+
+	/**
+	 * @param m member index
+	 * @param k index of the block among the member's blocks
+	 * @return number of events the member can choose between in the block
+	 */
+	public int getOptions(int m, int k) {
+		return options[m][k].length;
+	}
+
+	/**
+	 * @param m member index
+	 * @param k index of the block among the member's blocks
+	 * @return index of the chosen event among the block's events
+	 */
+	public int getChoice(int m, int k) {
+		return choice[m][k];
+	}
+
+	/**
+	 * @return fingerprint of the roster with its chosen events, equal to the fingerprint of the same roster reached by round 2
+	 */
+	public Fingerprint getFingerprint() {
+		return Fingerprint.of(hashes);
+	}
+
+	/**
+	 * @return the roster with its chosen events
+	 */
+	public CompleteTeamRoster toCompleteTeamRoster() {
+		CompleteTeamRoster roster = new CompleteTeamRoster(configuration);
+		for (int m = 0; m < members.length; m++) {
+			if (team[m] < 0)
+				continue;
+			roster.assignMember(team[m], members[m]);
+			for (TournamentEvent event : getEvents(m))
+				roster.assignMemberEvent(team[m], members[m], event);
+		}
+		return roster;
+	}
+
+	/**
+	 * Finds the leaf of the TeamRoster tree with the same team assignments. Teams of the same size are relabeled in the order the tree
+	 * fills them, since the tree only branches on the first of several empty teams of the same size.
+	 *
+	 * @return the TeamRoster leaf, or null if the roster is not a leaf of the tree
+	 */
+	public TeamRoster toTeamRoster() {
+		int[] label = new int[teamSize.length];
+		boolean[] used = new boolean[teamSize.length];
+		for (int t = 0; t < label.length; t++)
+			label[t] = -1;
+
+		TeamRoster roster = TeamRoster.initTeamRoster(configuration);
+		for (int i = 0; !roster.isComplete(); i++) {
+			int t = team[configuration.getTeamMemberAt(i).getIndex()];
+			if (t >= 0 && label[t] == -1) {
+				for (int j = 0; j < used.length && label[t] == -1; j++) {
+					if (!used[j] && configuration.getTeamSizes()[j] == configuration.getTeamSizes()[t]) {
+						label[t] = j;
+						used[j] = true;
+					}
+				}
+			}
+			int target = t >= 0 ? label[t] : -1;
+
+			TeamRoster next = null;
+			for (BranchAndBound child : roster.branch())
+				if (((TeamRoster) child).getAssignment().getTeamIndex() == target)
+					next = (TeamRoster) child;
+			if (next == null)
+				return null;
+			roster = next;
+		}
+		for (int m = 0; m < members.length; m++)
+			if (team[m] >= 0 && !isAssigned(roster, members[m]))
+				return null;
+		return roster;
+	}
+
+	private static boolean isAssigned(TeamRoster roster, TeamMember member) {
+		for (TeamRoster tr = roster; tr.getAssignment() != null; tr = tr.getParent())
+			if (tr.getAssignment().getMember() == member)
+				return tr.getAssignment().getTeamIndex() >= 0;
+		return false;
+	}
+
+	/**
+	 * Finds the leaf of the FullTeamRoster tree below a TeamRoster leaf with the same event choices
+	 * @param roster TeamRoster leaf returned by toTeamRoster()
+	 * @return the FullTeamRoster leaf
+	 */
+	public FullTeamRoster toFullTeamRoster(TeamRoster roster) {
+		FullTeamRoster full = FullTeamRoster.initFullTeamRoster(configuration, roster.compact());
+		while (!full.isComplete()) {
+			ArrayList<BranchAndBound> children = full.branch();
+			FullTeamRoster next = (FullTeamRoster) children.get(0);
+			for (BranchAndBound child : children) {
+				EventAssignment assignment = ((FullTeamRoster) child).getAssignment();
+				if (assignment != null && isChoice(assignment.getMember().getIndex(), configuration.getChoiceIndices(assignment.getMember(), assignment.getChoice())))
+					next = (FullTeamRoster) child;
+			}
+			full = next;
+		}
+		return full;
+	}
+
+	/**
+	 * @param m member index
+	 * @param indices index of an event in each of the member's blocks
+	 * @return if the member chose those events
+	 */
+	private boolean isChoice(int m, byte[] indices) {
+		for (int k = 0; k < indices.length; k++)
+			if (choice[m][k] != indices[k])
+				return false;
+		return true;
+	}
+
+	/**
+	 * @param m member index
+	 * @return the events the member is in: their signup events and their chosen event in each block
+	 */
+	private HashSet<TournamentEvent> getEvents(int m) {
+		HashSet<TournamentEvent> events = new HashSet<TournamentEvent>();
+		for (TournamentEvent event : signups[m])
+			events.add(event);
+		for (int k = 0; k < options[m].length; k++)
+			events.add(options[m][k][choice[m][k]]);
+		return events;
+	}
+
+}
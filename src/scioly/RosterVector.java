@@ -0,0 +1,177 @@
+package scioly;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+
+import constraintOptimizer.ConstraintOptimizer.BranchAndBound;
+import scioly.Team.TeamMember;
+import scioly.Tournament.TournamentBlock;
+import scioly.Tournament.TournamentEvent;
+
+/**
+ *
+ * RosterVector
+ * A leaf of the TeamRoster or FullTeamRoster tree reduced to its assignments: the team of each member and, for a round 2 leaf, the index
+ * of the event each member chose in each of their scheduling blocks. Unlike the leaf it was made from, it holds no reference into the
+ * tree, so a solution kept until the end of a round does not keep every node above it alive.
+ *
+ * A round 1 vector is where round 2 starts: FullTeamRoster branches on its members in reverse assignment order instead of walking back up
+ * the TeamRoster tree.
+ *
+ * @author jason
+ *
+ */
+public class RosterVector implements BranchAndBound {
+
+	private final TeamRosterConfiguration configuration;
+	/** team of each member by member index, or -1 */
+	private final byte[] teams;
+	/** number of members assigned by round 1, in assignment order; the rest are off the teams */
+	private final int assigned;
+	/** chosen event of each member in each conflicting block, at the member's choice offset, or null for a round 1 vector */
+	private final byte[] choices;
+	private final int score;
+	/** fingerprint of a round 2 vector made during the search, or null */
+	private final Fingerprint fingerprint;
+
+	RosterVector(TeamRosterConfiguration configuration, byte[] teams, int assigned, byte[] choices, int score, Fingerprint fingerprint) {
+		this.configuration = configuration;
+		this.teams = teams;
+		this.assigned = assigned;
+		this.choices = choices;
+		this.score = score;
+		this.fingerprint = fingerprint;
+	}
+
+	/**
+	 * @param memberIndex
+	 * @return team of the member, or -1 if the member is off the teams
+	 */
+	public int getTeam(int memberIndex) {
+		return teams[memberIndex];
+	}
+
+	/**
+	 * @return number of members assigned by round 1, in assignment order
+	 */
+	public int getAssigned() {
+		return assigned;
+	}
+
+	/**
+	 * @return if the vector holds event choices, i.e. was made from a round 2 leaf
+	 */
+	public boolean hasChoices() {
+		return choices != null;
+	}
+
+	/**
+	 * Only valid if hasChoices()
+	 * @param member
+	 * @return the events the member is in: their chosen event in each block, in the order of their conflicts, then their signup events
+	 */
+	public ArrayList<TournamentEvent> getEvents(TeamMember member) {
+		ArrayList<TournamentEvent> events = new ArrayList<TournamentEvent>();
+		int offset = configuration.getChoiceOffset(member);
+		for (Map.Entry<TournamentBlock, ArrayList<TournamentEvent>> conflict : configuration.getConflicts(member).entrySet())
+			events.add(conflict.getValue().get(choices[offset++]));
+		events.addAll(configuration.getSignups(member));
+		return events;
+	}
+
+	/**
+	 * Only valid if hasChoices()
+	 * @param offset a member's choice offset plus the index of one of their conflicting blocks
+	 * @return index of the event chosen in the block
+	 */
+	byte getChoice(int offset) {
+		return choices[offset];
+	}
+
+	/**
+	 * Rosters with the same fingerprint are the same roster, up to the order of the teams
+	 */
+	@Override
+	public Fingerprint fingerprint() {
+		return fingerprint;
+	}
+
+	/**
+	 * Writes the vector in a fixed-size binary form, read back by read(); the fingerprint is not written
+	 * @param out
+	 * @throws IOException
+	 */
+	public void write(DataOutput out) throws IOException {
+		out.writeInt(score);
+		out.writeShort(assigned);
+		out.write(teams);
+		out.writeBoolean(choices != null);
+		if (choices != null)
+			out.write(choices);
+	}
+
+	/**
+	 * @param configuration configuration of the roster that was written
+	 * @param in
+	 * @return vector written by write()
+	 * @throws IOException
+	 */
+	public static RosterVector read(TeamRosterConfiguration configuration, DataInput in) throws IOException {
+		int score = in.readInt();
+		int assigned = in.readShort();
+		byte[] teams = new byte[configuration.getTeam().getTeamMembers().size()];
+		in.readFully(teams);
+		byte[] choices = null;
+		if (in.readBoolean()) {
+			choices = new byte[configuration.getTotalChoices()];
+			in.readFully(choices);
+		}
+		return new RosterVector(configuration, teams, assigned, choices, score, null);
+	}
+
+	@Override
+	public boolean isComplete() {
+		return true;
+	}
+
+	@Override
+	public BranchAndBound getParent() {
+		return null;
+	}
+
+	@Override
+	public ArrayList<BranchAndBound> branch() {
+		return new ArrayList<BranchAndBound>();
+	}
+
+	/**
+	 * The vector is a leaf, so its bound is its score
+	 */
+	@Override
+	public int lowerBound() {
+		return score;
+	}
+
+	@Override
+	public int score() {
+		return score;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof RosterVector))
+			return false;
+		RosterVector v = (RosterVector) o;
+		return assigned == v.assigned && Arrays.equals(teams, v.teams) && Arrays.equals(choices, v.choices);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * Arrays.hashCode(teams) + Arrays.hashCode(choices);
+	}
+
+}
@@ -1,8 +1,10 @@
 package scioly;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 import constraintOptimizer.ConstraintOptimizer.BranchAndBound;
+import constraintOptimizer.Trail;
 import scioly.Team.TeamMember;
 import scioly.Tournament.TournamentEvent;
 
@@ -15,6 +17,9 @@ import scioly.Tournament.TournamentEvent;
  * 
  *  TeamRoster implements branch() and lowerBound() for depth-first branch and bound optimization.
  * 
+ *  Every count a node keeps (see Layout) is packed into a single byte array, so a node on the frontier is two objects: the TeamRoster and
+ *  its array. The assignment a node made is read back from its counts instead of being stored.
+ * 
  * @author jason
  *
  */
@@ -23,13 +28,11 @@ public class TeamRoster implements BranchAndBound {
 	private TeamRoster parent;
 	private TeamRosterConfiguration configuration;
 
-	private TeamRosterTeam[] teams;
+	private Layout layout;
+	private byte[] data;
 	private int assignmentIndex;
-	private byte[] eventNumberRemaining;
-	private byte[] lowerBounds;
-	private byte[] teamAssignments;
-
-	private TeamAssignment assignment;
+	private int lowerBound;
+	private boolean bounded;
 
 	/**
 	 * Returns the root of a TeamRoster tree representing a blank assignment.
@@ -38,20 +41,20 @@ public class TeamRoster implements BranchAndBound {
 	 * @return Root of TeamRoster tree (blank assignment)
 	 */
 	public static TeamRoster initTeamRoster(TeamRosterConfiguration configuration) {
-		TeamRosterTeam[] teams = new TeamRosterTeam[configuration.getTeamSizes().length];
-		for (int i = 0; i < teams.length; i++){
-			teams[i] = new TeamRosterTeam(configuration, configuration.getTeamSizes()[i]);
-		}
-		byte[] remaining = new byte[configuration.getTournament().getEvents().size()];
+		Layout layout = new Layout(configuration);
+		byte[] data = new byte[layout.length];
 		for (TeamMember member : configuration.getTeam().getTeamMembers()) {
 			for (TournamentEvent event : member.getEvents()) {
-				remaining[event.getIndex()]++;
+				data[layout.remaining + event.getIndex()]++;
 			}
 		}
-		byte[] teamAssignments = new byte[configuration.getTeam().getTeamMembers().size()];
-		for (int i = 0; i < teamAssignments.length; i++)
-			teamAssignments[i] = -1;
-		return new TeamRoster(null, configuration, teams, 0, remaining, new byte[configuration.getTournament().getEvents().size()], teamAssignments);
+		Arrays.fill(data, layout.assigned, layout.assigned + layout.members, (byte) -1);
+		TeamRoster root = new TeamRoster(null, configuration, layout, data, 0);
+		for (TournamentEvent event : configuration.getTournament().getEvents()) {
+			root.setBound(event.getIndex(), root.eventBound(event));
+			root.lowerBound += root.getBound(event.getIndex());
+		}
+		return root;
 	}
 
 	/**
@@ -59,20 +62,54 @@ public class TeamRoster implements BranchAndBound {
 	 * 
 	 * @param parent
 	 * @param configuration
-	 * @param teams
+	 * @param layout layout of data, shared by every node of the tree
+	 * @param data counts of the node, laid out by layout
 	 * @param assignmentIndex index of the next TeamMember to be assigned
-	 * @param eventNumberRemaining array representing the number of unassigned TeamMembers for each event; used for calculating lower bound
-	 * @param lowerBounds array representing current lower bound for each event
-	 * @param teamAssignments array representing which team each person is on
 	 */
-	public TeamRoster(TeamRoster parent, TeamRosterConfiguration configuration, TeamRosterTeam[] teams, int assignmentIndex, byte[] eventNumberRemaining, byte[] lowerBounds, byte[] teamAssignments) {
+	public TeamRoster(TeamRoster parent, TeamRosterConfiguration configuration, Layout layout, byte[] data, int assignmentIndex) {
 		this.parent = parent;
 		this.configuration = configuration;
+		this.layout = layout;
+		this.data = data;
 		this.assignmentIndex = assignmentIndex;
-		this.teams = teams;
-		this.eventNumberRemaining = eventNumberRemaining;
-		this.lowerBounds = lowerBounds;
-		this.teamAssignments = teamAssignments;
+	}
+
+	private int getEventNumber(int teamIndex, int eventIndex) {
+		return data[teamIndex * layout.events + eventIndex];
+	}
+
+	private int getNumberMembers(int teamIndex) {
+		return data[layout.count + teamIndex];
+	}
+
+	private int getMaxMembers(int teamIndex) {
+		return layout.sizes[teamIndex];
+	}
+
+	private int getTotalAssigned() {
+		int totalAssigned = 0;
+		for (int i = 0; i < layout.teams; i++)
+			totalAssigned += data[layout.count + i];
+		return totalAssigned;
+	}
+
+	private int getRemaining(int eventIndex) {
+		return data[layout.remaining + eventIndex];
+	}
+
+	private int getTeamAssignment(int memberIndex) {
+		return data[layout.assigned + memberIndex];
+	}
+
+	private short getBound(int eventIndex) {
+		int i = layout.bounds + 2 * eventIndex;
+		return (short) (data[i] << 8 | data[i + 1] & 0xFF);
+	}
+
+	private void setBound(int eventIndex, short bound) {
+		int i = layout.bounds + 2 * eventIndex;
+		data[i] = (byte) (bound >> 8);
+		data[i + 1] = (byte) bound;
 	}
 
 	@Override
@@ -87,167 +124,437 @@ public class TeamRoster implements BranchAndBound {
 	 */
 	@Override
 	public boolean isComplete() {
-		int totalAssigned = 0;
-		for (TeamRosterTeam t : teams)
-			totalAssigned += t.getNumberMembers();
-		return totalAssigned == configuration.getTotalTeamSize() || assignmentIndex == configuration.getTeam().getTeamMembers().size();
+		return getTotalAssigned() == configuration.getTotalTeamSize() || assignmentIndex == configuration.getTeam().getTeamMembers().size();
 	}
 
+	/**
+	 * Assigns the next member to a team, or leaves them off the teams
+	 * @param teamIndex team index, or -1 to leave the member off
+	 * @param member next TeamMember to be assigned
+	 */
 	private void assignMember(int teamIndex, TeamMember member) {
-		if (teamIndex >= 0) {
-			teams[teamIndex].assignMember(configuration.getTeamMemberAt(assignmentIndex));
-		}
-		this.assignment = new TeamAssignment(member, teamIndex);
 		assignmentIndex++;
 		for (TournamentEvent event : member.getEvents())
-			eventNumberRemaining[event.getIndex()]--;
-		teamAssignments[member.getIndex()] = (byte) teamIndex;
+			data[layout.remaining + event.getIndex()]--;
+		data[layout.assigned + member.getIndex()] = (byte) teamIndex;
+		if (teamIndex >= 0) {
+			data[layout.count + teamIndex]++;
+			for (TournamentEvent event : member.getEvents())
+				data[teamIndex * layout.events + event.getIndex()]++;
+		}
 	}
 
-	private void assignMemberEvent(int teamIndex, TeamMember member, TournamentEvent event) {
-		teams[teamIndex].assignMemberEvent(member, event);
+	/**
+	 * Takes back the last assignment made by assignMember()
+	 * @param teamIndex
+	 * @param member
+	 */
+	private void unassignMember(int teamIndex, TeamMember member) {
+		assignmentIndex--;
+		for (TournamentEvent event : member.getEvents())
+			data[layout.remaining + event.getIndex()]++;
+		data[layout.assigned + member.getIndex()] = -1;
+		if (teamIndex >= 0) {
+			data[layout.count + teamIndex]--;
+			for (TournamentEvent event : member.getEvents())
+				data[teamIndex * layout.events + event.getIndex()]--;
+		}
 	}
 
+	/**
+	 * @return the assignment that created this node, or null for the root
+	 */
 	public TeamAssignment getAssignment() {
-		return assignment;
+		if (assignmentIndex == 0)
+			return null;
+		TeamMember member = configuration.getTeamMemberAt(assignmentIndex - 1);
+		return new TeamAssignment(member, getTeamAssignment(member.getIndex()));
 	}
 
 	@Override
 	public int score() {
 		int sum = 0;
-		for (TeamRosterTeam team : teams) {
-			sum += team.score();
+		for (int i = 0; i < layout.teams; i++) {
+			for (TournamentEvent event : configuration.getTournament().getEvents())
+				sum += LowerBound.cost(event, getEventNumber(i, event.getIndex()) - event.getSize());
 		}
 		return sum;
 	}
 
+	/**
+	 * Only the events of the newest assignment can change their bound, so the total is kept on the node and updated by the change in
+	 * those events' bounds instead of summing over every event. Filling a team also tightens the bounds of events the member is not in,
+	 * but their older bounds are still valid, just weaker.
+	 */
 	@Override
 	public int lowerBound() {
-		if (assignment != null) {
-			for (TournamentEvent event : assignment.getMember().getEvents()) {
-				int[] num = new int[teams.length];
-				for (int i = 0; i < teams.length; i++) {
-					num[i] = teams[i].eventNumber[event.getIndex()] - event.getSize();
-				}
-				int left = eventNumberRemaining[event.getIndex()];
-				while (left > 0) {
-					int minIndex = 0;
-					for (int i = 0; i < teams.length; i++)
-						if (num[i] < num[minIndex])
-							minIndex = i;
-					if (num[minIndex] < 0)
-						num[minIndex]++;
-					else break;
-					left--;
-				}
-				byte sum = 0;
-				for (int i = 0; i < teams.length; i++) {
-					if (event.isBuilding()) {
-						if (Math.abs(num[i]) >= 2)
-							sum++;
-					}
-					else
-						sum += num[i] * num[i];
-				}
-				lowerBounds[event.getIndex()] = sum;
-			}
+		if (assignmentIndex > 0 && !bounded)
+			updateBounds(configuration.getTeamMemberAt(assignmentIndex - 1));
+		bounded = true;
+		return lowerBound;
+	}
+
+	private void updateBounds(TeamMember member) {
+		for (TournamentEvent event : member.getEvents()) {
+			short sum = eventBound(event);
+			lowerBound += sum - getBound(event.getIndex());
+			setBound(event.getIndex(), sum);
 		}
-		int sum = 0;
-		for (TournamentEvent event : configuration.getTournament().getEvents()) {
-			sum += lowerBounds[event.getIndex()];
+	}
+
+	/**
+	 * Bounds a single event: unassigned members signed up for it can only fill its shortfall on teams with open spots, and no more of them
+	 * than there are open spots left in total.
+	 * 
+	 * @param event
+	 * @return lowest possible score of the event over all teams
+	 */
+	private short eventBound(TournamentEvent event) {
+		int[] num = new int[layout.teams];
+		int[] room = new int[layout.teams];
+		int totalRoom = configuration.getTotalTeamSize();
+		for (int i = 0; i < layout.teams; i++) {
+			num[i] = getEventNumber(i, event.getIndex()) - event.getSize();
+			room[i] = getMaxMembers(i) - getNumberMembers(i);
+			totalRoom -= getNumberMembers(i);
 		}
-		return sum;
+		return (short) LowerBound.event(event, num, room, Math.min(getRemaining(event.getIndex()), totalRoom));
+	}
+
+	/**
+	 * The rosters below a TeamRoster depend on which member is next and the team of every member placed so far: round 2 schedules each
+	 * member by their own events, and the rosters returned name the members, so two nodes that place different members cannot share a
+	 * key even when every team ends up with the same event counts. Members are assigned in a fixed order, so a key only matches a node
+	 * that makes the same assignments.
+	 */
+	@Override
+	public long key() {
+		long h = assignmentIndex;
+		for (int i = 0; i < assignmentIndex; i++)
+			h = h * 0x9E3779B97F4A7C15L + getTeamAssignment(i);
+		// finish with the splitmix64 mixer so that the low bits depend on every field
+		h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+		h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+		h ^= h >>> 31;
+		return h == 0 ? 1 : h;
 	}
 
 	@Override
 	public ArrayList<BranchAndBound> branch() {
 		ArrayList<BranchAndBound> branches = new ArrayList<BranchAndBound>();
 		TeamMember person = configuration.getTeamMemberAt(assignmentIndex);
-		for (int i = 0; i < teams.length; i++) {
-			if (teams[i].getNumberMembers() >= teams[i].getMaxMembers())
+		for (int i = 0; i < layout.teams; i++) {
+			if (!canAssign(i, person))
 				continue;
+			TeamRoster tr = child(i, person);
+			if (tr.hasRoomForRequired())
+				branches.add(tr);
+		}
+		if (canSkip(person))
+			branches.add(child(-1, person));
+		return branches;
+	}
 
-			// check if stacking and unstacking rules are satisfied
-			boolean valid = true;
-			for (TeamMember[] pair : configuration.getStacks()) {
-				if (person == pair[0]) {
-					if (teamAssignments[pair[1].getIndex()] != -1 && teamAssignments[pair[1].getIndex()] != i) {
-						valid = false;
-						break;
-					}
-				} else if (person == pair[1]) {
-					if (teamAssignments[pair[0].getIndex()] != -1 && teamAssignments[pair[0].getIndex()] != i) {
-						valid = false;
-						break;
-					}
-				}
-			}
-			if (!valid)
-				continue;
+	/**
+	 * The teams of every member are already packed in the node, so the vector is read straight from them
+	 */
+	@Override
+	public RosterVector compact() {
+		return new RosterVector(configuration, Arrays.copyOfRange(data, layout.assigned, layout.assigned + layout.members), assignmentIndex, null, score(), null);
+	}
 
-			for (TeamMember[] pair : configuration.getUnstacks()) {
-				if (person == pair[0]) {
-					if (teamAssignments[pair[1].getIndex()] != -1 && teamAssignments[pair[1].getIndex()] == i) {
-						valid = false;
-						break;
-					}
-				} else if (person == pair[1]) {
-					if (teamAssignments[pair[0].getIndex()] != -1 && teamAssignments[pair[0].getIndex()] == i) {
-						valid = false;
-						break;
-					}
-				}
+	@Override
+	public TeamRosterTrail trail() {
+		return new TeamRosterTrail(this);
+	}
+
+	private TeamRoster child(int teamIndex, TeamMember person) {
+		TeamRoster tr = this.copy(this);
+		tr.assignMember(teamIndex, person);
+		return tr;
+	}
+
+	/**
+	 * @param i team index
+	 * @param person next TeamMember to be assigned
+	 * @return if the team has room for the member and the stacking and unstacking rules allow the member on the team
+	 */
+	private boolean canAssign(int i, TeamMember person) {
+		if (getNumberMembers(i) >= getMaxMembers(i))
+			return false;
+
+		// empty teams of the same size are interchangeable, so only the first of them is tried
+		if (isInterchangeable(i))
+			return false;
+
+		// check if stacking and unstacking rules are satisfied
+		for (TeamMember[] pair : configuration.getStacks()) {
+			if (person == pair[0]) {
+				if (getTeamAssignment(pair[1].getIndex()) != -1 && getTeamAssignment(pair[1].getIndex()) != i)
+					return false;
+			} else if (person == pair[1]) {
+				if (getTeamAssignment(pair[0].getIndex()) != -1 && getTeamAssignment(pair[0].getIndex()) != i)
+					return false;
 			}
-			if (!valid)
-				continue;
+		}
 
-			TeamRoster tr = this.copy(this);
-			tr.assignMember(i, person);
-			for (TournamentEvent event : person.getEvents())
-				tr.assignMemberEvent(i, person, event);
-			branches.add(tr);
+		for (TeamMember[] pair : configuration.getUnstacks()) {
+			if (person == pair[0]) {
+				if (getTeamAssignment(pair[1].getIndex()) != -1 && getTeamAssignment(pair[1].getIndex()) == i)
+					return false;
+			} else if (person == pair[1]) {
+				if (getTeamAssignment(pair[0].getIndex()) != -1 && getTeamAssignment(pair[0].getIndex()) == i)
+					return false;
+			}
 		}
-		int totalAssigned = 0;
-		for (TeamRosterTeam t : teams)
-			totalAssigned += t.getNumberMembers();
+		return true;
+	}
+
+	/**
+	 * @param person next TeamMember to be assigned
+	 * @return if the member can be left off the teams, i.e. there are more members left than open spots and the member is not stacked
+	 */
+	private boolean canSkip(TeamMember person) {
+		int totalAssigned = getTotalAssigned();
 		int numSkipsLeft = configuration.getTeam().getTeamMembers().size() - assignmentIndex - configuration.getTotalTeamSize() + totalAssigned;
 
-		boolean valid = true;
 		for (TeamMember[] pair : configuration.getStacks()) {
-			if (person == pair[0] || person == pair[1]) {
-				valid = false;
-				break;
-			}
+			if (person == pair[0] || person == pair[1])
+				return false;
 		}
+		return numSkipsLeft > 0;
+	}
 
-		if (numSkipsLeft > 0 && valid) {
-			// System.out.println(person);
-			TeamRoster tr = this.copy(this);
-			tr.assignMember(-1, person);
-			branches.add(tr);
-		}
-		return branches;
+	/**
+	 * Once the teams are full no more members are assigned, so a roster without room for every remaining member named in a stacking rule
+	 * could only lead to rosters that break the rule.
+	 * 
+	 * @return if the remaining spots on the teams can hold every remaining stacked member
+	 */
+	private boolean hasRoomForRequired() {
+		return configuration.getTotalTeamSize() - getTotalAssigned() >= configuration.getRequiredRemaining(assignmentIndex);
+	}
+
+	/**
+	 * Checks if team i is empty and an earlier team of the same size is also empty; assigning a member to either team produces mirror
+	 * images of the same subtree, so only the earliest such team needs to be branched on.
+	 * 
+	 * @param i team index
+	 * @return if assigning to team i would only produce a permutation of assigning to an earlier team
+	 */
+	private boolean isInterchangeable(int i) {
+		if (getNumberMembers(i) > 0)
+			return false;
+		for (int j = 0; j < i; j++)
+			if (getNumberMembers(j) == 0 && getMaxMembers(j) == getMaxMembers(i))
+				return true;
+		return false;
 	}
 
 	public TeamRoster copy(TeamRoster parent) {
-		TeamRosterTeam[] teamsCopy = new TeamRosterTeam[teams.length];
-		for (int i = 0; i < teams.length; i++) {
-			teamsCopy[i] = teams[i].copy();
-		}
-		return new TeamRoster(parent, configuration, teamsCopy, assignmentIndex, eventNumberRemaining.clone(), lowerBounds.clone(), teamAssignments.clone());
+		TeamRoster copy = new TeamRoster(parent, configuration, layout, data.clone(), assignmentIndex);
+		copy.lowerBound = lowerBound;
+		return copy;
 	}
 
 	public void print() {
 		System.out.println("unassigned: " + assignmentIndex);
-		for (int i = 0; i < teams.length; i++) {
-			System.out.printf("team %d:\n", i);
-			teams[i].print();
+		for (int i = 0; i < layout.teams; i++) {
+			System.out.printf("team %d: %d members\n", i, getNumberMembers(i));
+			System.out.println(Arrays.toString(Arrays.copyOfRange(data, i * layout.events, (i + 1) * layout.events)));
 		}
 		System.out.printf("lower bound: %d\n", lowerBound());
 		System.out.printf("score: %d\n", score());
 		System.out.println();
 	}
 
+	/**
+	 * 
+	 * TeamRosterTrail
+	 * Searches the TeamRoster tree in place: a single working TeamRoster is assigned to and unassigned from as the search moves down and
+	 * back up the tree. Each apply() records the lower bounds it overwrites so undo() can restore them exactly, so the working roster has
+	 * the same lower bounds as the TeamRoster nodes branch() would create.
+	 * 
+	 * @author jason
+	 *
+	 */
+	public static class TeamRosterTrail implements Trail {
+
+		private final TeamRoster state;
+		private final TeamRosterConfiguration configuration;
+
+		/** team index applied at each depth below the base, -1 for leaving the member off */
+		private final int[] path;
+		private int depth;
+		/** nodes along the path created by snapshot(), valid up to depth built; consecutive snapshots share them */
+		private final TeamRoster[] chain;
+		private int built;
+		/** lower bounds overwritten by each apply, most recent last */
+		private final short[] saved;
+		private int savedSize;
+		private final int[] savedTotal;
+		/**
+		 * lower bounds of each child, kept from when the search first applies it, since a depth-first search applies each child once to
+		 * order the children and again to search it; valid while visits at the depth match
+		 */
+		private final short[][] probed;
+		private final int[][] probedTotal;
+		private final int[][] probedAt;
+		/** number of nodes entered at each depth */
+		private final int[] visits;
+
+		private TeamRosterTrail(TeamRoster base) {
+			this.configuration = base.configuration;
+			base.lowerBound();
+			state = base.copy(null);
+			state.lowerBound = base.lowerBound;
+			state.bounded = true;
+
+			int members = configuration.getTeam().getTeamMembers().size();
+			path = new int[members];
+			chain = new TeamRoster[members + 1];
+			chain[0] = base;
+			savedTotal = new int[members];
+			int events = 0;
+			int maxEvents = 0;
+			for (TeamMember member : configuration.getTeam().getTeamMembers()) {
+				events += member.getEvents().size();
+				maxEvents = Math.max(maxEvents, member.getEvents().size());
+			}
+			saved = new short[events];
+
+			int children = state.layout.teams + 1;
+			probed = new short[members][children * maxEvents];
+			probedTotal = new int[members][children];
+			probedAt = new int[members][children];
+			visits = new int[members + 1];
+			visits[0] = 1;
+		}
+
+		@Override
+		public boolean isComplete() {
+			return state.isComplete();
+		}
+
+		@Override
+		public int lowerBound() {
+			return state.lowerBound;
+		}
+
+		@Override
+		public int getChildCount() {
+			return state.layout.teams + 1;
+		}
+
+		/**
+		 * @param child team index, or the number of teams for leaving the member off
+		 */
+		@Override
+		public boolean apply(int child) {
+			TeamMember person = configuration.getTeamMemberAt(state.assignmentIndex);
+			int teamIndex = child < state.layout.teams ? child : -1;
+			if (teamIndex >= 0 ? !state.canAssign(teamIndex, person) : !state.canSkip(person))
+				return false;
+
+			state.assignMember(teamIndex, person);
+			path[depth] = teamIndex;
+			if (teamIndex >= 0 && !state.hasRoomForRequired()) {
+				state.unassignMember(teamIndex, person);
+				return false;
+			}
+
+			savedTotal[depth] = state.lowerBound;
+			ArrayList<TournamentEvent> events = person.getEvents();
+			for (TournamentEvent event : events)
+				saved[savedSize++] = state.getBound(event.getIndex());
+			short[] cache = probed[depth];
+			int offset = child * events.size();
+			if (probedAt[depth][child] == visits[depth]) {
+				for (int k = 0; k < events.size(); k++)
+					state.setBound(events.get(k).getIndex(), cache[offset + k]);
+				state.lowerBound = probedTotal[depth][child];
+			}
+			else {
+				state.updateBounds(person);
+				for (int k = 0; k < events.size(); k++)
+					cache[offset + k] = state.getBound(events.get(k).getIndex());
+				probedTotal[depth][child] = state.lowerBound;
+				probedAt[depth][child] = visits[depth];
+			}
+			depth++;
+			visits[depth]++;
+			return true;
+		}
+
+		@Override
+		public void undo() {
+			depth--;
+			TeamMember person = configuration.getTeamMemberAt(state.assignmentIndex - 1);
+			ArrayList<TournamentEvent> events = person.getEvents();
+			for (int i = events.size() - 1; i >= 0; i--)
+				state.setBound(events.get(i).getIndex(), saved[--savedSize]);
+			state.lowerBound = savedTotal[depth];
+			state.unassignMember(path[depth], person);
+			built = Math.min(built, depth);
+		}
+
+		/**
+		 * Replays the path from the base node, so the copy has the same parent chain as a node created by branch(). Nodes created for an
+		 * earlier snapshot are reused as far as the paths agree.
+		 */
+		@Override
+		public TeamRoster snapshot() {
+			for (; built < depth; built++) {
+				TeamRoster roster = chain[built];
+				chain[built + 1] = roster.child(path[built], configuration.getTeamMemberAt(roster.assignmentIndex));
+				chain[built + 1].lowerBound();
+			}
+			return chain[depth];
+		}
+
+	}
+
+	/**
+	 * 
+	 * Layout
+	 * Offsets of the counts in a TeamRoster's data array, shared by every node of a tree:
+	 *  - the number of members in each event on each team, team by team
+	 *  - the number of members on each team
+	 *  - the number of unassigned members signed up for each event
+	 *  - the team of each member, or -1 if the member is unassigned or left off the teams
+	 *  - the lower bound of each event, as two bytes
+	 * 
+	 * @author jason
+	 *
+	 */
+	public static class Layout {
+
+		private final int teams;
+		private final int events;
+		private final int members;
+		private final int[] sizes;
+
+		private final int count;
+		private final int remaining;
+		private final int assigned;
+		private final int bounds;
+		private final int length;
+
+		private Layout(TeamRosterConfiguration configuration) {
+			teams = configuration.getTeamSizes().length;
+			events = configuration.getTournament().getEvents().size();
+			members = configuration.getTeam().getTeamMembers().size();
+			sizes = configuration.getTeamSizes().clone();
+
+			count = teams * events;
+			remaining = count + teams;
+			assigned = remaining + events;
+			bounds = assigned + members;
+			length = bounds + 2 * events;
+		}
+
+	}
+
 	public static class TeamAssignment {
 
 		private TeamMember member;
@@ -293,8 +600,19 @@ public class TeamRoster implements BranchAndBound {
 			numberAssigned++;
 		}
 
-		public void assignMemberEvent(TeamMember member, TournamentEvent event) {
-			eventNumber[event.getIndex()]++;
+		/**
+		 * @param eventIndex index of an event the last assigned member is in
+		 */
+		public void assignMemberEvent(int eventIndex) {
+			eventNumber[eventIndex]++;
+		}
+
+		/**
+		 * Takes back assignMemberEvent()
+		 * @param eventIndex
+		 */
+		public void removeMemberEvent(int eventIndex) {
+			eventNumber[eventIndex]--;
 		}
 
 		public int getNumberMembers() {
@@ -2,6 +2,7 @@ package scioly;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
 
 import scioly.Team.TeamMember;
@@ -22,6 +23,16 @@ public class TeamRosterConfiguration {
 	private HashMap<TeamMember, HashMap<TournamentBlock, ArrayList<TournamentEvent>>> conflicts = new HashMap<TeamMember, HashMap<TournamentBlock, ArrayList<TournamentEvent>>>();
 	private HashMap<TeamMember, ArrayList<TournamentEvent>> signups = new HashMap<TeamMember, ArrayList<TournamentEvent>>();
 	private TeamMember[] assignmentOrder;
+	private MemberOrdering ordering = MemberOrdering.DEFAULT;
+	private int[] requiredRemaining;
+	private int[] choiceOffsets;
+	private int totalChoices;
+	/** for each member by index, the indices of the events each of their round 2 branches puts them in */
+	private int[][][] choiceEvents;
+	/** for each member by index, the index of the event each of their round 2 branches chooses in each conflicting block */
+	private byte[][][] choiceIndices;
+	/** events by index */
+	private TournamentEvent[] events;
 	private ArrayList<TeamMember[]> stacks = new ArrayList<TeamMember[]>();
 	private ArrayList<TeamMember[]> unstacks = new ArrayList<TeamMember[]>();
 
@@ -29,23 +40,41 @@ public class TeamRosterConfiguration {
 		this.team = team;
 		this.tournament = tournament;
 		this.teamSizes = teamSizes;
-		this.assignmentOrder = new TeamMember[team.getTeamMembers().size()];
-		assignmentOrder = team.getTeamMembers().toArray(assignmentOrder);
 
 		for (int i : teamSizes)
 			totalTeamSize += i;
 
+		computeAssignmentOrder();
+
 		computeConflicts();
 		computeEventIndices();
+		computeBlockIndices();
 		computeTeamMemberIndices();
+		computeChoiceOffsets();
+		computeChoiceTables();
 	}
 
 	public void addStack(TeamMember a, TeamMember b) {
 		stacks.add(new TeamMember[] {a, b});
+		computeAssignmentOrder();
 	}
 
 	public void addUnstack(TeamMember a, TeamMember b) {
 		unstacks.add(new TeamMember[] {a, b});
+		computeAssignmentOrder();
+	}
+
+	/**
+	 * Sets the order in which TeamMembers are assigned to teams and recomputes the assignment order
+	 * @param ordering
+	 */
+	public void setMemberOrdering(MemberOrdering ordering) {
+		this.ordering = ordering;
+		computeAssignmentOrder();
+	}
+
+	public MemberOrdering getMemberOrdering() {
+		return ordering;
 	}
 
 	public ArrayList<TeamMember[]> getStacks(){
@@ -94,6 +123,70 @@ public class TeamRosterConfiguration {
 		}
 	}
 
+	/**
+	 * Sorts the assignment order according to the member ordering. Members that compare equal keep their relative order.
+	 */
+	private void computeAssignmentOrder() {
+		ArrayList<TeamMember> order = new ArrayList<TeamMember>(team.getTeamMembers());
+		switch (ordering) {
+		case STACKS_FIRST:
+			ArrayList<TeamMember> stacked = new ArrayList<TeamMember>();
+			ArrayList<TeamMember[]> pairs = new ArrayList<TeamMember[]>(stacks);
+			pairs.addAll(unstacks);
+			for (TeamMember[] pair : pairs)
+				for (TeamMember member : pair)
+					if (!stacked.contains(member))
+						stacked.add(member);
+			order.removeAll(stacked);
+			stacked.addAll(order);
+			order = stacked;
+			break;
+		case MOST_EVENTS:
+			order.sort(Comparator.comparingInt((TeamMember m) -> m.getEvents().size()).reversed());
+			break;
+		case RAREST_EVENTS:
+			order.sort(Comparator.comparingInt(this::rarestEventSignups).thenComparing(Comparator.comparingInt((TeamMember m) -> m.getEvents().size()).reversed()));
+			break;
+		case MOST_CONFLICTS:
+			order.sort(Comparator.comparingLong(this::eventCombinations).reversed());
+			break;
+		default:
+			break;
+		}
+		assignmentOrder = order.toArray(new TeamMember[order.size()]);
+
+		requiredRemaining = new int[assignmentOrder.length + 1];
+		for (int i = assignmentOrder.length - 1; i >= 0; i--) {
+			boolean required = false;
+			for (TeamMember[] pair : stacks)
+				if (pair[0] == assignmentOrder[i] || pair[1] == assignmentOrder[i])
+					required = true;
+			requiredRemaining[i] = requiredRemaining[i + 1] + (required ? 1 : 0);
+		}
+	}
+
+	/**
+	 * @param member
+	 * @return number of TeamMembers signed up for the least popular of the member's events
+	 */
+	private int rarestEventSignups(TeamMember member) {
+		int min = Integer.MAX_VALUE;
+		for (TournamentEvent event : member.getEvents())
+			min = Math.min(min, team.getEventMembers(event).size());
+		return min;
+	}
+
+	/**
+	 * @param member
+	 * @return number of ways the member's conflicting events can be chosen, i.e. the number of round 2 branches for the member
+	 */
+	private long eventCombinations(TeamMember member) {
+		long product = 1;
+		for (ArrayList<TournamentEvent> events : conflicts.get(member).values())
+			product *= events.size();
+		return product;
+	}
+
 	/**
 	 * Computes a unique array index for each event, for use in roster byte arrays
 	 */
@@ -105,6 +198,17 @@ public class TeamRosterConfiguration {
 		}
 	}
 
+	/**
+	 * Computes a unique array index for each scheduling block, for use in roster arrays
+	 */
+	private void computeBlockIndices() {
+		int counter = 0;
+		for (TournamentBlock block : tournament.getBlocks()) {
+			block.setIndex(counter);
+			counter++;
+		}
+	}
+
 	/**
 	 * Computes a unique array index for each team member, for use in roster byte arrays
 	 */
@@ -116,6 +220,106 @@ public class TeamRosterConfiguration {
 		}
 	}
 
+	/**
+	 * Computes where each team member's event choices start in a round 2 RosterVector, one byte per conflicting block
+	 */
+	private void computeChoiceOffsets() {
+		choiceOffsets = new int[team.getTeamMembers().size()];
+		int counter = 0;
+		for (TeamMember member : team.getTeamMembers()) {
+			choiceOffsets[member.getIndex()] = counter;
+			counter += conflicts.get(member).size();
+		}
+		totalChoices = counter;
+	}
+
+	/**
+	 * Tabulates every way each team member's conflicting events can be chosen, i.e. the member's round 2 branches, so that they are built
+	 * once instead of at every node. The ways are numbered as in Combinations.getCombinations(): in mixed radix over the member's
+	 * conflicting blocks, the last block changing fastest.
+	 */
+	private void computeChoiceTables() {
+		events = new TournamentEvent[tournament.getEvents().size()];
+		for (TournamentEvent event : tournament.getEvents())
+			events[event.getIndex()] = event;
+
+		choiceEvents = new int[team.getTeamMembers().size()][][];
+		choiceIndices = new byte[team.getTeamMembers().size()][][];
+		for (TeamMember member : team.getTeamMembers()) {
+			ArrayList<ArrayList<TournamentEvent>> blocks = new ArrayList<ArrayList<TournamentEvent>>(conflicts.get(member).values());
+			ArrayList<TournamentEvent> memberSignups = signups.get(member);
+			int count = 1;
+			for (ArrayList<TournamentEvent> block : blocks)
+				count *= block.size();
+
+			int[][] memberEvents = new int[count][blocks.size() + memberSignups.size()];
+			byte[][] memberIndices = new byte[count][blocks.size()];
+			for (int c = 0; c < count; c++) {
+				int rest = c;
+				for (int k = blocks.size() - 1; k >= 0; k--) {
+					memberIndices[c][k] = (byte) (rest % blocks.get(k).size());
+					rest /= blocks.get(k).size();
+					memberEvents[c][k] = blocks.get(k).get(memberIndices[c][k]).getIndex();
+				}
+				for (int s = 0; s < memberSignups.size(); s++)
+					memberEvents[c][blocks.size() + s] = memberSignups.get(s).getIndex();
+			}
+			choiceEvents[member.getIndex()] = memberEvents;
+			choiceIndices[member.getIndex()] = memberIndices;
+		}
+	}
+
+	/**
+	 * @param member
+	 * @return number of ways the member's conflicting events can be chosen, i.e. the number of round 2 branches for the member
+	 */
+	public int getChoiceCount(TeamMember member) {
+		return choiceEvents[member.getIndex()].length;
+	}
+
+	/**
+	 * @param member
+	 * @param choice number of the way the member's conflicting events are chosen
+	 * @return indices of the events the member is in: the chosen event in each conflicting block, in the order of getConflicts(), then
+	 * their signup events; shared, so not to be modified
+	 */
+	public int[] getChoiceEvents(TeamMember member, int choice) {
+		return choiceEvents[member.getIndex()][choice];
+	}
+
+	/**
+	 * @param member
+	 * @param choice number of the way the member's conflicting events are chosen
+	 * @return index of the chosen event among the events of each conflicting block, in the order of getConflicts(), as stored in a round 2
+	 * RosterVector; shared, so not to be modified
+	 */
+	public byte[] getChoiceIndices(TeamMember member, int choice) {
+		return choiceIndices[member.getIndex()][choice];
+	}
+
+	/**
+	 * @param index
+	 * @return the TournamentEvent with the given index
+	 */
+	public TournamentEvent getEvent(int index) {
+		return events[index];
+	}
+
+	/**
+	 * @param member
+	 * @return index of the member's first event choice in a round 2 RosterVector
+	 */
+	public int getChoiceOffset(TeamMember member) {
+		return choiceOffsets[member.getIndex()];
+	}
+
+	/**
+	 * @return number of event choices in a round 2 RosterVector, i.e. the number of conflicting blocks over all team members
+	 */
+	public int getTotalChoices() {
+		return totalChoices;
+	}
+
 	/**
 	 * Gets the conflicting events for a given team member at each scheduling block, not including signup events
 	 * @param member
@@ -143,4 +347,54 @@ public class TeamRosterConfiguration {
 		return assignmentOrder[index];
 	}
 
+	/**
+	 * Members named in a stacking rule must be on a team, so a partial roster also needs room for those not yet assigned
+	 * @param index position in the assignment order
+	 * @return number of TeamMembers at or after the given position that must be assigned to a team
+	 */
+	public int getRequiredRemaining(int index) {
+		return requiredRemaining[index];
+	}
+
+	/**
+	 * Order in which round 1 assigns TeamMembers to teams. Branching on the most constrained members first lets the lower bound prune
+	 * more of the tree early.
+	 */
+	public static enum MemberOrdering {
+
+		/** iteration order of the team */
+		DEFAULT("default"),
+		/** members named in stacking or unstacking rules first, so the rules cut branches as early as possible */
+		STACKS_FIRST("stacks-first"),
+		/** members signed up for the most events first */
+		MOST_EVENTS("most-events"),
+		/** members signed up for the events with the fewest signups first */
+		RAREST_EVENTS("rarest-events"),
+		/** members with the most combinations of conflicting events first */
+		MOST_CONFLICTS("most-conflicts");
+
+		private final String name;
+
+		private MemberOrdering(String name) {
+			this.name = name;
+		}
+
+		/**
+		 * @param name name as written in the config file
+		 * @return the matching ordering, or null if there is none
+		 */
+		public static MemberOrdering fromName(String name) {
+			for (MemberOrdering o : values())
+				if (o.name.equals(name))
+					return o;
+			return null;
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+
+	}
+
 }
@@ -0,0 +1,214 @@
+package scioly;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+
+import constraintOptimizer.ConstraintOptimizer.BranchAndBound;
+import constraintOptimizer.Subproblem;
+import scioly.Team.TeamMember;
+
+/**
+ *
+ * TeamSplit
+ * The round 2 tree below a round 1 roster, split by team. Once round 1 has placed every TeamMember, the round 2 score is a sum over the
+ * teams, and the events chosen by a member of one team do not change the score of any other team. Instead of one FullTeamRoster tree
+ * over every member's choices, each team's choices are searched in a tree of their own (a TeamPart), and the best rosters are the
+ * combinations of one leaf of each team whose total is within tolerance. The search then takes the sum of the teams' trees rather than
+ * their product.
+ *
+ * A TeamSplit is the root of round 2 for its round 1 roster: branching it gives the root of each team's part. The nodes of a part are
+ * ordinary FullTeamRosters that only branch on the members of their team, with the other teams counted at their bounds at the root.
+ *
+ * @author jason
+ *
+ */
+public class TeamSplit implements BranchAndBound {
+
+	private static final Comparator<TeamLeaf> BY_SCORE = new Comparator<TeamLeaf>() {
+		@Override
+		public int compare(TeamLeaf o1, TeamLeaf o2) {
+			return Integer.compare(o1.score, o2.score);
+		}
+	};
+
+	private final TeamRosterConfiguration configuration;
+	private final RosterVector roster;
+	private final FullTeamRoster root;
+	private final TeamPart[] parts;
+	/** parts whose tree has not been searched yet */
+	private final AtomicInteger remaining;
+
+	/**
+	 * @param configuration
+	 * @param roster round 1 leaf
+	 * @param exact whether the teams' blocks are bounded exactly (see FullTeamRoster)
+	 */
+	public TeamSplit(TeamRosterConfiguration configuration, RosterVector roster, boolean exact) {
+		this.configuration = configuration;
+		this.roster = roster;
+		root = FullTeamRoster.initFullTeamRoster(configuration, roster, exact);
+		parts = new TeamPart[configuration.getTeamSizes().length];
+		for (int t = 0; t < parts.length; t++)
+			parts[t] = new TeamPart(t, root.lowerBound() - root.teamBound(t));
+		remaining = new AtomicInteger(parts.length);
+	}
+
+	@Override
+	public boolean isComplete() {
+		return false;
+	}
+
+	@Override
+	public BranchAndBound getParent() {
+		return null;
+	}
+
+	/**
+	 * @return the root of each team's part
+	 */
+	@Override
+	public ArrayList<BranchAndBound> branch() {
+		ArrayList<BranchAndBound> branches = new ArrayList<BranchAndBound>();
+		for (TeamPart part : parts)
+			branches.add(root.split(part));
+		return branches;
+	}
+
+	@Override
+	public int lowerBound() {
+		return root.lowerBound();
+	}
+
+	@Override
+	public int score() {
+		return root.score();
+	}
+
+	/**
+	 * Offers every combination of one leaf of each team whose total is within the limit, cheapest leaves first
+	 */
+	private void combine(IntSupplier limit, Consumer<BranchAndBound> solutions) {
+		// rest[t] is the lowest total of the teams from t on
+		int[] rest = new int[parts.length + 1];
+		for (int t = parts.length - 1; t >= 0; t--) {
+			synchronized (parts[t].leaves) {
+				if (parts[t].leaves.isEmpty())
+					return;
+				parts[t].leaves.sort(BY_SCORE);
+				rest[t] = rest[t + 1] + parts[t].leaves.get(0).score;
+			}
+		}
+		combine(0, 0, new TeamLeaf[parts.length], rest, limit, solutions);
+	}
+
+	private void combine(int t, int score, TeamLeaf[] chosen, int[] rest, IntSupplier limit, Consumer<BranchAndBound> solutions) {
+		if (t == parts.length) {
+			solutions.accept(merge(chosen, score));
+			return;
+		}
+		for (TeamLeaf leaf : parts[t].leaves) {
+			if (score + leaf.score + rest[t + 1] > limit.getAsInt())
+				break;
+			chosen[t] = leaf;
+			combine(t + 1, score + leaf.score, chosen, rest, limit, solutions);
+		}
+	}
+
+	/**
+	 * @param chosen a leaf of each team
+	 * @param score total score of the leaves
+	 * @return the complete roster made of the leaves
+	 */
+	private RosterVector merge(TeamLeaf[] chosen, int score) {
+		byte[] teams = new byte[configuration.getTeam().getTeamMembers().size()];
+		byte[] choices = new byte[configuration.getTotalChoices()];
+		long[] hashes = new long[2 * parts.length];
+		for (int m = 0; m < teams.length; m++)
+			teams[m] = (byte) roster.getTeam(m);
+		for (int i = 0; i < roster.getAssigned(); i++) {
+			TeamMember member = configuration.getTeamMemberAt(i);
+			int t = roster.getTeam(member.getIndex());
+			if (t < 0)
+				continue;
+			int offset = configuration.getChoiceOffset(member);
+			for (int k = 0; k < configuration.getConflicts(member).size(); k++)
+				choices[offset + k] = chosen[t].vector.getChoice(offset + k);
+		}
+		for (int t = 0; t < parts.length; t++) {
+			hashes[2 * t] = chosen[t].high;
+			hashes[2 * t + 1] = chosen[t].low;
+		}
+		return new RosterVector(configuration, teams, roster.getAssigned(), choices, score, Fingerprint.of(hashes));
+	}
+
+	/**
+	 * The event choices of the members of one team. Its nodes are bounded and scored as whole rosters, counting every other team at its
+	 * bound at the root, so that they are pruned against the incumbent of round 2.
+	 */
+	class TeamPart implements Subproblem {
+
+		private final int team;
+		/** bounds of the other teams at the root */
+		private final int offset;
+		private final AtomicInteger open = new AtomicInteger();
+		/** leaves within tolerance; guarded by itself */
+		private final ArrayList<TeamLeaf> leaves = new ArrayList<TeamLeaf>();
+
+		private TeamPart(int team, int offset) {
+			this.team = team;
+			this.offset = offset;
+		}
+
+		int getTeam() {
+			return team;
+		}
+
+		int getOffset() {
+			return offset;
+		}
+
+		@Override
+		public void open() {
+			open.incrementAndGet();
+		}
+
+		@Override
+		public void addLeaf(BranchAndBound leaf) {
+			FullTeamRoster full = (FullTeamRoster) leaf;
+			TeamLeaf teamLeaf = new TeamLeaf(full.compact(), full.score() - offset, full.getHash(team, 0), full.getHash(team, 1));
+			synchronized (leaves) {
+				leaves.add(teamLeaf);
+			}
+		}
+
+		@Override
+		public void close(IntSupplier limit, Consumer<BranchAndBound> solutions) {
+			if (open.decrementAndGet() == 0 && remaining.decrementAndGet() == 0)
+				combine(limit, solutions);
+		}
+
+	}
+
+	/**
+	 * A leaf of one team's part: the events chosen by the team's members, the team's score and its Fingerprint hashes
+	 */
+	private static class TeamLeaf {
+
+		private final RosterVector vector;
+		private final int score;
+		private final long high;
+		private final long low;
+
+		private TeamLeaf(RosterVector vector, int score, long high, long low) {
+			this.vector = vector;
+			this.score = score;
+			this.high = high;
+			this.low = low;
+		}
+
+	}
+
+}
@@ -36,6 +36,10 @@ public class Tournament {
 		return events.values();
 	}
 
+	public Collection<TournamentBlock> getBlocks(){
+		return schedule.values();
+	}
+
 	public static class TournamentEvent {
 
 		private final String name;
@@ -90,6 +94,7 @@ public class Tournament {
 
 		private final Tournament tournament;
 		private final int timeslot;
+		private int index;
 		private ArrayList<TournamentEvent> eventList = new ArrayList<TournamentEvent>();
 
 		public TournamentBlock(Tournament tournament, int timeslot) {
@@ -113,6 +118,14 @@ public class Tournament {
 			return timeslot;
 		}
 
+		public int getIndex() {
+			return index;
+		}
+
+		public void setIndex(int index) {
+			this.index = index;
+		}
+
 		public ArrayList<TournamentEvent> getEvents(){
 			return eventList;
 		}